@@ -0,0 +1,110 @@
+package org.vaadin.teemu.ratingstars.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.aggregate.RatingAggregator;
+import org.vaadin.teemu.ratingstars.aggregate.RatingBroadcaster;
+
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.ui.UI;
+
+/**
+ * Benchmarks of voting through a shared {@link RatingAggregator} from
+ * concurrent threads, with and without a {@link RatingBroadcaster} pushing the
+ * averages to thousands of simulated UIs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RatingAggregatorBenchmark {
+
+    private static final int ITEMS = 100;
+
+    /** Counts the accesses instead of locking a session. */
+    static class SimulatedUI extends UI {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void init(VaadinRequest request) {
+        }
+
+        @Override
+        public Future<Void> access(Runnable runnable) {
+            runnable.run();
+            accesses.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    static final LongAdder accesses = new LongAdder();
+
+    /** UI updates made by the broadcaster, reported per operation. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Updates {
+        public long uiAccesses;
+
+        @TearDown(Level.Iteration)
+        public void collect() {
+            // the first thread collects the accesses of the iteration
+            uiAccesses = accesses.sumThenReset();
+        }
+    }
+
+    @Param({ "0", "5000" })
+    public int uis;
+
+    private RatingAggregator aggregator;
+    private RatingBroadcaster broadcaster;
+
+    @Setup
+    public void setup() {
+        aggregator = new RatingAggregator(5, 2);
+        if (uis > 0) {
+            broadcaster = new RatingBroadcaster(aggregator, 50, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < uis; i++) {
+                RatingStars display = new RatingStars();
+                new SimulatedUI().setContent(display);
+                broadcaster.register(display, i % ITEMS);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (broadcaster != null) {
+            broadcaster.close();
+        }
+    }
+
+    @Benchmark
+    public void vote(Updates updates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        aggregator.addVote(random.nextInt(ITEMS), 1 + random.nextInt(10) / 2.0);
+    }
+
+}
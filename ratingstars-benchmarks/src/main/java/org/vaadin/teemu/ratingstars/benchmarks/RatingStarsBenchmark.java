@@ -0,0 +1,116 @@
+package org.vaadin.teemu.ratingstars.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsState;
+
+import com.vaadin.server.JsonCodec;
+
+import elemental.json.JsonValue;
+
+/**
+ * Benchmarks of the server-side RatingStars component.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RatingStarsBenchmark {
+
+    /** Exposes the state of the component for encoding. */
+    static class StateRatingStars extends RatingStars {
+        private static final long serialVersionUID = 1L;
+
+        RatingStarsState getSharedState() {
+            return getState(false);
+        }
+    }
+
+    private StateRatingStars ratingStars;
+    private JsonValue encodedState;
+    private List<RatingStars> ratingStarsList;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        ratingStars = new StateRatingStars();
+        ratingStars.setValueCaption("Poor", "Fair", "Good", "Very good", "Excellent");
+        encodedState = encodeState(null);
+
+        Random random = new Random(42);
+        ratingStarsList = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            RatingStars item = new RatingStars();
+            item.setValue(random.nextInt(11) / 2.0);
+            ratingStarsList.add(item);
+        }
+    }
+
+    private JsonValue encodeState(JsonValue diffState) {
+        return JsonCodec.encode(ratingStars.getSharedState(), diffState, RatingStarsState.class, null)
+                .getDiffOrValue();
+    }
+
+    @Benchmark
+    public RatingStars construct() {
+        return new RatingStars();
+    }
+
+    @Benchmark
+    public JsonValue setValueAndDiff() {
+        ratingStars.setValue((double) (++counter % 5 + 1));
+        return encodeState(encodedState);
+    }
+
+    @Benchmark
+    public RatingStars setValueCaption() {
+        ratingStars.setValueCaption(++counter % 5 + 1, (counter & 1) == 0 ? "Good" : "Great");
+        ratingStars.beforeClientResponse(false);
+        // the delta is sent as a client RPC, written to the response here
+        ratingStars.retrievePendingRpcCalls();
+        return ratingStars;
+    }
+
+    @Benchmark
+    public JsonValue encodeState() {
+        return encodeState(null);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<RatingStars> sort() {
+        List<RatingStars> sorted = new ArrayList<>(ratingStarsList);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(ratingStars);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.vaadin.teemu.ratingstars.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.RatingStarsCaptionSet;
+import org.vaadin.teemu.ratingstars.RatingStarsConfig;
+
+import com.vaadin.ui.VerticalLayout;
+
+/**
+ * Measures the number of bytes a RatingStars component adds to a serialized
+ * session by serializing a layout with and without 1,000 components, the
+ * same way the session is written when it's replicated. Run with:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar org.vaadin.teemu.ratingstars.benchmarks.SessionFootprint
+ * </pre>
+ */
+public class SessionFootprint {
+
+    private static final int COMPONENTS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        RatingStarsCaptionSet captions = new RatingStarsCaptionSet("quality", "Poor", "Fair", "Good", "Very good",
+                "Excellent");
+        RatingStarsConfig config = new RatingStarsConfig("quality").withCaptionSet(captions);
+
+        VerticalLayout empty = new VerticalLayout();
+        VerticalLayout plain = new VerticalLayout();
+        VerticalLayout captioned = new VerticalLayout();
+        VerticalLayout configured = new VerticalLayout();
+        for (int i = 0; i < COMPONENTS; i++) {
+            RatingStars ratingStars = new RatingStars();
+            ratingStars.setValue((i % 10) / 2.0);
+            plain.addComponent(ratingStars);
+
+            ratingStars = new RatingStars();
+            ratingStars.setValue((i % 10) / 2.0);
+            ratingStars.setValueCaptionSet(captions);
+            captioned.addComponent(ratingStars);
+
+            ratingStars = new RatingStars(config);
+            ratingStars.setValue((i % 10) / 2.0);
+            configured.addComponent(ratingStars);
+        }
+
+        int base = serializedSize(empty);
+        System.out.println("Bytes per instance with " + COMPONENTS + " components:");
+        System.out.println("  default:     " + (serializedSize(plain) - base) / COMPONENTS);
+        System.out.println("  caption set: " + (serializedSize(captioned) - base) / COMPONENTS);
+        System.out.println("  config:      " + (serializedSize(configured) - base) / COMPONENTS);
+    }
+
+    private static int serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.size();
+    }
+
+}
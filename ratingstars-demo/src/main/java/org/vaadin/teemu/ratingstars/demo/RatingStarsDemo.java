@@ -6,10 +6,12 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 import com.vaadin.annotations.Theme;
 import com.vaadin.annotations.Title;
 import com.vaadin.annotations.VaadinServletConfiguration;
+import com.vaadin.data.provider.DataProvider;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinServlet;
 import com.vaadin.shared.ui.ContentMode;
@@ -21,7 +23,13 @@ import com.vaadin.ui.Notification;
 import com.vaadin.ui.Panel;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
+import org.vaadin.teemu.ratingstars.MultiRatingStars;
+import org.vaadin.teemu.ratingstars.RatingDistribution;
 import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.RatingStarsCaptionSet;
+import org.vaadin.teemu.ratingstars.RatingStarsList;
+import org.vaadin.teemu.ratingstars.aggregate.RatingAggregator;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingPrecision;
 
 /**
  * A demo application for the RatingStars component. For a live demo see
@@ -51,7 +59,20 @@ public class RatingStarsDemo extends UI {
         valueCaptions.put(5, "Excellent");
     }
 
-    private final String[] movieNames = {"The Matrix", "Memento", "Kill Bill: Vol. 1"};
+    private final static RatingStarsCaptionSet movieCaptions = new RatingStarsCaptionSet("movie", valueCaptions);
+
+    private final static String[] movieNames = {"The Matrix", "Memento", "Kill Bill: Vol. 1"};
+
+    /** Votes of all users in half stars, seeded with some random votes. */
+    private final static RatingAggregator movieRatings = new RatingAggregator(5, 2);
+
+    static {
+        for (int i = 0; i < movieNames.length; i++) {
+            for (int vote = 0; vote < 10; vote++) {
+                movieRatings.addVote(i, ThreadLocalRandom.current().nextInt(1, 6));
+            }
+        }
+    }
 
     private final Set<RatingStars> allRatingStars = new HashSet<>();
 
@@ -106,7 +127,8 @@ public class RatingStarsDemo extends UI {
             }
         });
 
-        demoLayout.addComponents(animatedCheckBox, createMovieDemo(), createThemeDemos());
+        demoLayout.addComponents(animatedCheckBox, createMovieDemo(), createProductDemo(), createGridDemo(),
+                createThemeDemos());
     }
 
     private VerticalLayout createThemeDemos() {
@@ -147,21 +169,71 @@ public class RatingStarsDemo extends UI {
         return themeDemos;
     }
 
+    private VerticalLayout createProductDemo() {
+        VerticalLayout productDemo = new VerticalLayout();
+        productDemo.setMargin(false);
+        productDemo.addComponent(new Label("<strong>Rate a product on several criteria</strong>", ContentMode.HTML));
+
+        MultiRatingStars productRating = new MultiRatingStars("Quality", "Price", "Delivery", "Support");
+        productRating.setValueCaptionSet(movieCaptions);
+        productRating.addCriterionValueChangeListener(event -> Notification.show(
+                "You voted " + event.getValue() + " stars for "
+                        + productRating.getCriterionCaption(event.getCriterion()) + ".",
+                Notification.Type.TRAY_NOTIFICATION));
+        productDemo.addComponent(productRating);
+
+        return productDemo;
+    }
+
+    private VerticalLayout createGridDemo() {
+        VerticalLayout gridDemo = new VerticalLayout();
+        gridDemo.setMargin(false);
+        gridDemo.addComponent(new Label("<strong>A list of 100,000 ratings</strong>", ContentMode.HTML));
+
+        double[] ratings = new double[100000];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = ThreadLocalRandom.current().nextInt(0, 6);
+        }
+
+        RatingStarsList<Integer> list = new RatingStarsList<>(item -> "Item #" + (item + 1), item -> ratings[item]);
+        list.setDataProvider(DataProvider.fromCallbacks(
+                query -> IntStream.range(query.getOffset(), query.getOffset() + query.getLimit()).boxed(),
+                query -> ratings.length));
+        list.setRatingSetter((item, value) -> ratings[item] = value);
+        list.addRatingChangeListener(event -> Notification.show(
+                "You voted " + event.getValue() + " stars for item #" + (event.getItem() + 1) + ".",
+                Notification.Type.TRAY_NOTIFICATION));
+        list.getCaptionColumn().setCaption("Item");
+        list.getRatingColumn().setCaption("Rating");
+        list.setHeight("250px");
+        gridDemo.addComponent(list);
+
+        return gridDemo;
+    }
+
     private VerticalLayout createMovieDemo() {
         VerticalLayout movieDemo = new VerticalLayout();
         movieDemo.setMargin(false);
         movieDemo.addComponent(new Label("Rate your favourite movies:"));
 
-        for (final String movieName : movieNames) {
+        for (int i = 0; i < movieNames.length; i++) {
+            final String movieName = movieNames[i];
+            final long movieId = i;
+
             final RatingStars averageRating = new RatingStars();
             averageRating.setMaxValue(5);
-            averageRating.setValue(ThreadLocalRandom.current().nextDouble(1, 5));
-            averageRating.setReadOnly(true);
+            movieRatings.bindAverage(averageRating, movieId);
             allRatingStars.add(averageRating);
 
+            final RatingDistribution distribution = new RatingDistribution(5, 2);
+            distribution.addStyleName("tiny");
+            movieRatings.bindDistribution(distribution, movieId);
+
             final RatingStars userRating = new RatingStars();
             userRating.setMaxValue(5);
-            userRating.setValueCaption(valueCaptions.values().toArray(new String[5]));
+            userRating.setValueCaptionSet(movieCaptions);
+            userRating.setPrecision(RatingPrecision.HALF);
+            movieRatings.bind(userRating, movieId);
             userRating.addValueChangeListener(event -> {
                 Double value = event.getValue();
 
@@ -173,15 +245,16 @@ public class RatingStarsDemo extends UI {
                 // set "Your Rating" caption
                 changedRs.setValueCaption((int) Math.round(value), "Your Rating");
 
-                // dummy logic to calculate "average" value
-                averageRating.setValue((averageRating.getValue() + value) / 2);
+                averageRating.setValue(movieRatings.getAverage(movieId));
+                distribution.setCounts(movieRatings.getSummary(movieId).getCounts());
             });
 
             allRatingStars.add(userRating);
 
             Label movieNameLabel = new Label(movieName);
             movieNameLabel.setWidth("100px");
-            HorizontalLayout movieRow = new HorizontalLayout(movieNameLabel, userRating, averageRating);
+            HorizontalLayout movieRow = new HorizontalLayout(movieNameLabel, userRating, averageRating,
+                    distribution);
             movieRow.setMargin(false);
             movieDemo.addComponent(movieRow);
         }
@@ -0,0 +1,335 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.event.ConnectorEventListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.Component;
+import com.vaadin.util.ReflectTools;
+import org.vaadin.teemu.ratingstars.gwt.client.MultiRatingStarsServerRpc;
+import org.vaadin.teemu.ratingstars.gwt.client.MultiRatingStarsState;
+
+/**
+ * A component rating a single item on several criteria, for example quality,
+ * price and delivery, showing a row of stars for each criterion. Unlike using
+ * a {@link RatingStars} component per criterion, there's only one state, one
+ * connector and one widget, and a rating given by the user is sent with one
+ * RPC call carrying the index of the criterion.
+ */
+public class MultiRatingStars extends AbstractComponent {
+    private static final long serialVersionUID = -3361938218046154573L;
+
+    private RatingStarsCaptionSet captionSet;
+
+    /**
+     * Listener notified when the value of a criterion changes.
+     */
+    @FunctionalInterface
+    public interface CriterionValueChangeListener extends ConnectorEventListener {
+
+        Method CRITERION_VALUE_CHANGE_METHOD = ReflectTools.findMethod(CriterionValueChangeListener.class,
+                "criterionValueChange", CriterionValueChangeEvent.class);
+
+        void criterionValueChange(CriterionValueChangeEvent event);
+    }
+
+    /**
+     * Event fired when the value of a criterion changes.
+     */
+    public static class CriterionValueChangeEvent extends Component.Event {
+        private static final long serialVersionUID = -6219683465297813642L;
+
+        private final int criterion;
+        private final double oldValue;
+        private final double value;
+        private final boolean userOriginated;
+
+        protected CriterionValueChangeEvent(MultiRatingStars source, int criterion, double oldValue, double value,
+                boolean userOriginated) {
+            super(source);
+            this.criterion = criterion;
+            this.oldValue = oldValue;
+            this.value = value;
+            this.userOriginated = userOriginated;
+        }
+
+        @Override
+        public MultiRatingStars getComponent() {
+            return (MultiRatingStars) super.getComponent();
+        }
+
+        /**
+         * @return index of the changed criterion
+         */
+        public int getCriterion() {
+            return criterion;
+        }
+
+        /**
+         * @return the value of the criterion before the change
+         */
+        public double getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * @return the new value of the criterion
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * @return <code>true</code> if the value was given by the user
+         */
+        public boolean isUserOriginated() {
+            return userOriginated;
+        }
+    }
+
+    /**
+     * Constructs a new MultiRatingStars component with a row for each of the
+     * given criteria, all having the value 0.0, and default maximum value of
+     * five.
+     *
+     * @param criteria
+     *            captions of the criteria
+     */
+    public MultiRatingStars(String... criteria) {
+        registerRpc((MultiRatingStarsServerRpc) (criterion, newValue) -> {
+            // ignore values a modified or outdated client could send, NaN fails the comparisons
+            if (!isReadOnly() && criterion >= 0 && criterion < getCriterionCount() && newValue >= 0
+                    && newValue <= getMaxValue()) {
+                // the client already shows the value
+                updateValue(criterion, newValue, true);
+            }
+        });
+        getState().criteria = criteria.clone();
+        getState().values = new double[criteria.length];
+    }
+
+    @Override
+    protected MultiRatingStarsState getState() {
+        return (MultiRatingStarsState) super.getState();
+    }
+
+    @Override
+    protected MultiRatingStarsState getState(boolean markAsDirty) {
+        return (MultiRatingStarsState) super.getState(markAsDirty);
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        if (captionSet != null) {
+            RatingStarsCaptionRegistry.get(getUI()).register(captionSet);
+        }
+    }
+
+    @Override
+    public void detach() {
+        if (captionSet != null) {
+            RatingStarsCaptionRegistry.get(getUI()).unregister(captionSet);
+        }
+        super.detach();
+    }
+
+    /**
+     * @return number of criteria
+     */
+    public int getCriterionCount() {
+        return getState(false).criteria.length;
+    }
+
+    /**
+     * @param criterion
+     *            index of the criterion
+     * @return the caption of the criterion
+     */
+    public String getCriterionCaption(int criterion) {
+        checkCriterion(criterion);
+        return getState(false).criteria[criterion];
+    }
+
+    /**
+     * Sets the caption shown for a criterion.
+     *
+     * @param criterion
+     *            index of the criterion
+     * @param caption
+     */
+    public void setCriterionCaption(int criterion, String caption) {
+        checkCriterion(criterion);
+        getState().criteria[criterion] = caption;
+    }
+
+    /**
+     * Sets the value of a criterion.
+     *
+     * @param criterion
+     *            index of the criterion
+     * @param value
+     */
+    public void setValue(int criterion, double value) {
+        checkCriterion(criterion);
+        updateValue(criterion, value, false);
+    }
+
+    /**
+     * @param criterion
+     *            index of the criterion
+     * @return the value of the criterion
+     */
+    public double getValue(int criterion) {
+        checkCriterion(criterion);
+        return getState(false).values[criterion];
+    }
+
+    /**
+     * Sets the values of all criteria.
+     *
+     * @param values
+     *            a value for each criterion
+     */
+    public void setValues(double... values) {
+        if (values.length != getCriterionCount()) {
+            throw new IllegalArgumentException(
+                    "Given " + values.length + " values for " + getCriterionCount() + " criteria.");
+        }
+        for (int i = 0; i < values.length; i++) {
+            updateValue(i, values[i], false);
+        }
+    }
+
+    /**
+     * @return a copy of the values of all criteria
+     */
+    public double[] getValues() {
+        return getState(false).values.clone();
+    }
+
+    private void updateValue(int criterion, double value, boolean userOriginated) {
+        double oldValue = getState(false).values[criterion];
+        if (oldValue != value) {
+            getState(!userOriginated).values[criterion] = value;
+            fireEvent(new CriterionValueChangeEvent(this, criterion, oldValue, value, userOriginated));
+        }
+    }
+
+    private void checkCriterion(int criterion) {
+        if (criterion < 0 || criterion >= getCriterionCount()) {
+            throw new IndexOutOfBoundsException(
+                    "Given criterion (" + criterion + ") is not between 0 and " + (getCriterionCount() - 1) + ".");
+        }
+    }
+
+    /**
+     * Adds a listener notified when the value of a criterion changes.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addCriterionValueChangeListener(CriterionValueChangeListener listener) {
+        return addListener(CriterionValueChangeEvent.class, listener,
+                CriterionValueChangeListener.CRITERION_VALUE_CHANGE_METHOD);
+    }
+
+    /**
+     * Sets the maximum value (rating) the user can give for every criterion.
+     * The default value is five.
+     *
+     * @param maxValue
+     */
+    public void setMaxValue(int maxValue) {
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("Given maximum value (" + maxValue + ") must be greater than zero.");
+        }
+        getState().maxValue = maxValue;
+    }
+
+    /**
+     * @return the maximum value (rating) the user can give
+     */
+    public int getMaxValue() {
+        return getState(false).maxValue;
+    }
+
+    /**
+     * Sets whether the client-side transitions should be animated or not. The
+     * default value is <code>true</code>.
+     *
+     * @param animated
+     */
+    public void setAnimated(boolean animated) {
+        getState().animated = animated;
+    }
+
+    /**
+     * Sets whether the user can give ratings. The values of a read-only
+     * component can still be set programmatically, but the values sent by
+     * the client are ignored. Overridden to make the method public, as it's
+     * protected in {@link AbstractComponent}.
+     *
+     * @param readOnly
+     */
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        super.setReadOnly(readOnly);
+    }
+
+    /**
+     * @return <code>true</code> if the user can't give ratings
+     * @see #setReadOnly(boolean)
+     */
+    @Override
+    public boolean isReadOnly() {
+        return super.isReadOnly();
+    }
+
+    /**
+     * Sets all given captions as displayed descriptions for rating values of
+     * every criterion in sequence starting from 1.
+     *
+     * @param captionsForValues
+     */
+    public void setValueCaption(String... captionsForValues) {
+        Map<Integer, String> captions = new HashMap<>();
+        int value = 1;
+        for (String caption : captionsForValues) {
+            captions.put(value++, caption);
+        }
+        getState().valueCaptions = captions.isEmpty() ? null : captions;
+    }
+
+    /**
+     * Sets a shared set of captions as the displayed descriptions for rating
+     * values of every criterion.
+     *
+     * @param captionSet
+     *            the caption set or <code>null</code> to remove
+     * @see RatingStars#setValueCaptionSet(RatingStarsCaptionSet)
+     */
+    public void setValueCaptionSet(RatingStarsCaptionSet captionSet) {
+        if (getUI() != null) {
+            if (captionSet != null) {
+                RatingStarsCaptionRegistry.get(getUI()).register(captionSet);
+            }
+            if (this.captionSet != null) {
+                RatingStarsCaptionRegistry.get(getUI()).unregister(this.captionSet);
+            }
+        }
+        this.captionSet = captionSet;
+        getState().captionSetId = captionSet != null ? captionSet.getId() : null;
+    }
+
+    /**
+     * @return the shared caption set or <code>null</code> if not set
+     */
+    public RatingStarsCaptionSet getValueCaptionSet() {
+        return captionSet;
+    }
+
+}
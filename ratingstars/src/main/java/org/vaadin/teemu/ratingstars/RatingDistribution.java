@@ -0,0 +1,227 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.util.BitSet;
+
+import com.vaadin.ui.AbstractComponent;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingDistributionClientRpc;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingDistributionState;
+
+/**
+ * A read-only component showing the distribution of the votes given for an
+ * item as a bar per rating step, for example <i>5&#9733; 62%</i>, <i>4&#9733;
+ * 20%</i> and so on, using the bar of the RatingStars theme. The component is
+ * fed with the number of votes of each step, for example from
+ * {@link org.vaadin.teemu.ratingstars.aggregate.RatingSummary#getCounts()}.
+ * <p>
+ * The percentages are shown rounded to whole percents. After the component
+ * has been sent to the browser, only the rows whose rounded percentage
+ * changes are sent, so updating the counts on every vote given for a busy
+ * item doesn't resend the whole distribution.
+ *
+ * @see org.vaadin.teemu.ratingstars.aggregate.RatingAggregator#bindDistribution(RatingDistribution,
+ *      long)
+ */
+public class RatingDistribution extends AbstractComponent {
+    private static final long serialVersionUID = 6926531873071925584L;
+
+    private final long[] counts;
+    private final int[] percentages;
+    private long total;
+
+    /** Rows changed since the last response, <code>null</code> if none. */
+    private BitSet changedRows;
+
+    /**
+     * Constructs a new distribution of whole-star ratings from 1 to 5.
+     */
+    public RatingDistribution() {
+        this(5);
+    }
+
+    /**
+     * Constructs a new distribution of whole-star ratings from 1 to the given
+     * maximum value.
+     *
+     * @param maxValue
+     *            the maximum rating value
+     */
+    public RatingDistribution(int maxValue) {
+        this(maxValue, 1);
+    }
+
+    /**
+     * Constructs a new distribution of ratings from 1 to the given maximum
+     * value with the given number of steps per whole value, for example two
+     * for half-star ratings.
+     *
+     * @param maxValue
+     *            the maximum rating value
+     * @param stepsPerValue
+     *            number of rating steps per whole value
+     */
+    public RatingDistribution(int maxValue, int stepsPerValue) {
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("Given maximum value (" + maxValue + ") must be greater than zero.");
+        }
+        if (stepsPerValue <= 0) {
+            throw new IllegalArgumentException(
+                    "Given steps per value (" + stepsPerValue + ") must be greater than zero.");
+        }
+        counts = new long[maxValue * stepsPerValue];
+        percentages = new int[counts.length];
+        getState().stepsPerValue = stepsPerValue;
+    }
+
+    @Override
+    protected RatingDistributionState getState() {
+        return (RatingDistributionState) super.getState();
+    }
+
+    @Override
+    protected RatingDistributionState getState(boolean markAsDirty) {
+        return (RatingDistributionState) super.getState(markAsDirty);
+    }
+
+    /**
+     * @return number of rating steps, that is the maximum value multiplied by
+     *         the steps per value
+     */
+    public int getStepCount() {
+        return counts.length;
+    }
+
+    /**
+     * Sets the number of votes of every step, index zero holding the count of
+     * step <code>1</code>, the smallest possible rating.
+     *
+     * @param counts
+     *            a count for each step
+     */
+    public void setCounts(long... counts) {
+        if (counts.length != this.counts.length) {
+            throw new IllegalArgumentException(
+                    "Given " + counts.length + " counts for " + this.counts.length + " steps.");
+        }
+        long total = 0;
+        for (long count : counts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Given count (" + count + ") must not be negative.");
+            }
+            total += count;
+        }
+        System.arraycopy(counts, 0, this.counts, 0, counts.length);
+        this.total = total;
+        updatePercentages();
+    }
+
+    /**
+     * Sets the number of votes of a single step.
+     *
+     * @param step
+     *            the step from <code>1</code> to {@link #getStepCount()}
+     * @param count
+     */
+    public void setCount(int step, long count) {
+        checkStep(step);
+        if (count < 0) {
+            throw new IllegalArgumentException("Given count (" + count + ") must not be negative.");
+        }
+        total += count - counts[step - 1];
+        counts[step - 1] = count;
+        updatePercentages();
+    }
+
+    /**
+     * @param step
+     *            the step from <code>1</code> to {@link #getStepCount()}
+     * @return number of votes of the step
+     */
+    public long getCount(int step) {
+        checkStep(step);
+        return counts[step - 1];
+    }
+
+    /**
+     * @return a copy of the vote counts by step, index zero holding the count
+     *         of step <code>1</code>
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * @return total number of votes
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param step
+     *            the step from <code>1</code> to {@link #getStepCount()}
+     * @return share of the votes of the step rounded to whole percents
+     */
+    public int getPercentage(int step) {
+        checkStep(step);
+        return percentages[step - 1];
+    }
+
+    private void updatePercentages() {
+        for (int i = 0; i < counts.length; i++) {
+            int percentage = total > 0 ? (int) Math.round(counts[i] * 100.0 / total) : 0;
+            if (percentages[i] != percentage) {
+                percentages[i] = percentage;
+                if (changedRows == null) {
+                    changedRows = new BitSet(counts.length);
+                    markAsDirty();
+                }
+                changedRows.set(i);
+            }
+        }
+    }
+
+    private void checkStep(int step) {
+        if (step < 1 || step > counts.length) {
+            throw new IndexOutOfBoundsException(
+                    "Given step (" + step + ") is not between 1 and " + counts.length + ".");
+        }
+    }
+
+    /**
+     * Sets whether the bars should be animated when the percentages change.
+     * The default value is <code>true</code>.
+     *
+     * @param animated
+     */
+    public void setAnimated(boolean animated) {
+        getState().animated = animated;
+    }
+
+    /**
+     * @return <code>true</code> if the changes are animated
+     */
+    public boolean isAnimated() {
+        return getState(false).animated;
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        if (initial) {
+            // the client-side connector is (re)created -> send all rows
+            getState(false).percentages = percentages.clone();
+        } else if (changedRows != null) {
+            int[] rows = new int[changedRows.cardinality()];
+            int[] rowPercentages = new int[rows.length];
+            int i = 0;
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                rows[i] = row;
+                rowPercentages[i++] = percentages[row];
+            }
+            getRpcProxy(RatingDistributionClientRpc.class).updateRows(rows, rowPercentages);
+        }
+        changedRows = null;
+    }
+
+}
@@ -1,8 +1,33 @@
 package org.vaadin.teemu.ratingstars;
 
+import static com.vaadin.server.ErrorEvent.findErrorHandler;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import com.vaadin.server.ErrorHandler;
+import com.vaadin.server.JsonCodec;
+import com.vaadin.shared.Registration;
+import com.vaadin.shared.communication.SharedState;
 import com.vaadin.ui.AbstractField;
+import com.vaadin.ui.ConnectorTracker;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+import org.vaadin.teemu.ratingstars.gwt.client.CommitPolicy;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingPrecision;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsClientRpc;
 import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
 import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsState;
+import org.vaadin.teemu.ratingstars.metrics.RatingStarsMetrics;
+
+import elemental.json.JsonValue;
 
 /**
  * RatingStars is a typical rating component seen in many web applications.
@@ -12,15 +37,152 @@ import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsState;
 public class RatingStars extends AbstractField<Double> implements Comparable<RatingStars> {
     private static final long serialVersionUID = 4689425856123104186L;
 
+    private RatingStarsCaptionSet captionSet;
+
+    private RatingStarsConfig config;
+
+    /**
+     * Captions of this instance, the state only has them as of the last full
+     * sync. Allocated when the first caption is set, like the listener list,
+     * to keep the serialized session small.
+     */
+    private Map<Integer, String> valueCaptions;
+
+    /** Captions changed since the last response, sent as a delta. */
+    private Map<Integer, String> changedValueCaptions;
+
+    private List<AsyncValueChangeListener> asyncValueChangeListeners;
+
+    /** Not serialized, falls back to the default executor after deserialization. */
+    private transient Executor listenerExecutor;
+
+    private VoteFilter voteFilter;
+
+    /**
+     * Whether the attach was recorded by the metrics, so the detach is
+     * recorded even if the metrics have been disabled meanwhile.
+     */
+    private transient boolean attachRecorded;
+
+    /** Whether the value change being fired is a {@link RollbackEvent}. */
+    private transient boolean rollingBack;
+
     private final RatingStarsServerRpc rpc = new RatingStarsServerRpc() {
         private static final long serialVersionUID = -7317353863605973697L;
 
         @Override
         public void valueChanged(double newValue) {
-            setValue(newValue);
+            boolean measure = RatingStarsMetrics.enabled();
+            if (measure) {
+                RatingStarsMetrics.get().rpcReceived();
+            }
+            // ignore values a modified or outdated client could send, NaN fails the comparisons
+            if (!(newValue >= 0 && newValue <= getMaxValue())) {
+                getRpcProxy(RatingStarsClientRpc.class).restoreValue(getValue());
+                return;
+            }
+            newValue = getPrecision().round(newValue);
+            VoteFilter filter = voteFilter;
+            if (filter != null && !isReadOnly() && !filter.accept(newValue)) {
+                getRpcProxy(RatingStarsClientRpc.class).restoreValue(getValue());
+                return;
+            }
+            Double oldValue = getValue();
+            long start = measure ? System.nanoTime() : 0;
+            boolean changed = setValue(newValue, true);
+            if (measure && changed) {
+                RatingStarsMetrics.get().listenersExecuted(System.nanoTime() - start, false);
+            }
+            if (changed) {
+                dispatchAsync(oldValue);
+            }
         }
     };
 
+    /**
+     * Listener for value changes made by the user, called outside of the
+     * session lock.
+     *
+     * @see RatingStars#addAsyncValueChangeListener(AsyncValueChangeListener)
+     */
+    @FunctionalInterface
+    public interface AsyncValueChangeListener extends Serializable {
+
+        /**
+         * Called on a thread of the listener executor after the user has
+         * changed the value. The session is not locked, so the component and
+         * its UI may only be modified through {@link UI#access(Runnable)}.
+         * Throwing an exception rolls the value back.
+         *
+         * @param event
+         *            the value change event
+         * @throws Exception
+         *             if the value could not be handled and should be rolled
+         *             back
+         */
+        void valueChange(ValueChangeEvent<Double> event) throws Exception;
+    }
+
+    /**
+     * Value change event fired when a value given by the user is rolled back
+     * because an asynchronous value change listener failed. It is user
+     * originated, since it reverts a change made by the user, so listeners
+     * handling only the changes made by the user, like
+     * {@link org.vaadin.teemu.ratingstars.aggregate.RatingAggregator#bind(RatingStars, long)
+     * RatingAggregator.bind}, undo the rejected value too.
+     *
+     * @see RatingStars#addAsyncValueChangeListener(AsyncValueChangeListener)
+     */
+    public static class RollbackEvent extends ValueChangeEvent<Double> {
+        private static final long serialVersionUID = 3530861263950244867L;
+
+        /**
+         * @param source
+         *            the component rolled back
+         * @param rejectedValue
+         *            the value rolled back
+         */
+        public RollbackEvent(RatingStars source, Double rejectedValue) {
+            super(source, rejectedValue, true);
+        }
+    }
+
+    /**
+     * Filter deciding whether a value given by the user is accepted.
+     *
+     * @see RatingStars#setVoteFilter(VoteFilter)
+     * @see org.vaadin.teemu.ratingstars.guard.VoteGuard
+     */
+    @FunctionalInterface
+    public interface VoteFilter extends Serializable {
+
+        /**
+         * @param newValue
+         *            the value given by the user
+         * @return <code>true</code> to accept the value, <code>false</code>
+         *         to reject it
+         */
+        boolean accept(double newValue);
+    }
+
+    private static class DefaultListenerExecutor {
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                // Virtual threads when running on a runtime supporting them.
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (Executor) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "ratingstars-listener");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
     /**
      * Constructs a new animated RatingStars component with default value of 0.0
      * and default maximum value of five.
@@ -29,12 +191,21 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
      * @see #setAnimated(boolean)
      */
     public RatingStars() {
+        // The defaults are those of the state, so they add nothing to the
+        // payload.
         registerRpc(rpc);
+    }
 
-        // Set the defaults.
-        setValue(0.0);
-        setMaxValue(5);
-        setAnimated(true);
+    /**
+     * Constructs a new RatingStars component using the given shared
+     * configuration.
+     *
+     * @param config
+     * @see #setConfig(RatingStarsConfig)
+     */
+    public RatingStars(RatingStarsConfig config) {
+        this();
+        setConfig(config);
     }
 
     @Override
@@ -42,6 +213,82 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
         return (RatingStarsState) super.getState();
     }
 
+    @Override
+    protected RatingStarsState getState(boolean markAsDirty) {
+        return (RatingStarsState) super.getState(markAsDirty);
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        if (captionSet != null) {
+            RatingStarsCaptionRegistry.get(getUI()).register(captionSet);
+        }
+        if (config != null) {
+            RatingStarsCaptionRegistry.get(getUI()).register(config);
+        }
+        if (RatingStarsMetrics.enabled()) {
+            RatingStarsMetrics.get().instanceAttached(getUI());
+            attachRecorded = true;
+        }
+    }
+
+    @Override
+    public void detach() {
+        if (attachRecorded) {
+            attachRecorded = false;
+            RatingStarsMetrics.get().instanceDetached(getUI());
+        }
+        if (captionSet != null) {
+            RatingStarsCaptionRegistry.get(getUI()).unregister(captionSet);
+        }
+        if (config != null) {
+            RatingStarsCaptionRegistry.get(getUI()).unregister(config);
+        }
+        super.detach();
+    }
+
+    /**
+     * Sets a shared configuration of the maximum value, animation, captions,
+     * style name and commit policy. While a configuration is set, its values
+     * take precedence over those set on this component. The configuration is
+     * registered to the UI the first time it's used, after which this
+     * component only refers to it by its id.
+     *
+     * @param config
+     *            the configuration or <code>null</code> to remove
+     * @see RatingStarsCaptionRegistry#update(RatingStarsConfig)
+     */
+    public void setConfig(RatingStarsConfig config) {
+        if (getUI() != null) {
+            if (config != null) {
+                RatingStarsCaptionRegistry.get(getUI()).register(config);
+            }
+            if (this.config != null) {
+                RatingStarsCaptionRegistry.get(getUI()).unregister(this.config);
+            }
+        }
+        this.config = config;
+        getState().configId = config != null ? config.getId() : null;
+    }
+
+    /**
+     * Returns the shared configuration. While attached, this is the
+     * configuration with the same id currently registered to the UI.
+     *
+     * @return the configuration or <code>null</code> if not set
+     * @see #setConfig(RatingStarsConfig)
+     */
+    public RatingStarsConfig getConfig() {
+        if (config != null && getUI() != null) {
+            RatingStarsConfig registered = RatingStarsCaptionRegistry.get(getUI()).getConfig(config.getId());
+            if (registered != null) {
+                return registered;
+            }
+        }
+        return config;
+    }
+
     /**
      * Sets the maximum value (rating) the user can give. The default value is
      * five.
@@ -55,6 +302,15 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
         getState().maxValue = maxValue;
     }
 
+    /**
+     * @return the maximum value (rating) the user can give
+     * @see #setMaxValue(int)
+     */
+    public int getMaxValue() {
+        RatingStarsConfig config = getConfig();
+        return config != null ? config.getMaxValue() : getState(false).maxValue;
+    }
+
     /**
      * Sets whether the client-side transitions should be animated or not. The
      * default value is <code>true</code>.
@@ -66,14 +322,269 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
         getState().animated = animated;
     }
 
+    /**
+     * Sets whether the animated transitions should be done by the browser
+     * using a CSS transition instead of updating the bar from script on each
+     * animation frame. Has no effect unless the component is animated. The
+     * default value is <code>false</code>.
+     *
+     * @param cssTransitions
+     *            should CSS transitions be used for the animations
+     * @see #setAnimated(boolean)
+     */
+    public void setCssTransitions(boolean cssTransitions) {
+        getState().cssTransitions = cssTransitions;
+    }
+
+    /**
+     * Sets whether the client-side widget should listen to the browser events
+     * through one document-level handler shared by all RatingStars components
+     * of the page instead of registering its own listeners. Recommended for
+     * pages with a large number of components. The default value is
+     * <code>false</code>.
+     *
+     * @param eventDelegation
+     *            should the events be handled by the shared handler
+     */
+    public void setEventDelegation(boolean eventDelegation) {
+        getState().eventDelegation = eventDelegation;
+    }
+
+    /**
+     * Sets whether all stars should be drawn by a single DOM element instead
+     * of one element per star. The number of DOM nodes then stays constant
+     * regardless of the maximum value, which is recommended for large maximum
+     * values. The default value is <code>false</code>.
+     *
+     * @param singleElement
+     *            should the stars be drawn by a single element
+     * @see #setMaxValue(int)
+     */
+    public void setSingleElement(boolean singleElement) {
+        getState().singleElement = singleElement;
+    }
+
+    /**
+     * Sets the fractions of a star the user can give. With
+     * {@link RatingPrecision#HALF} or {@link RatingPrecision#TENTH} the bar
+     * follows the pointer across the stars and the value given on click is
+     * rounded up to the precision. The default value is
+     * {@link RatingPrecision#WHOLE}.
+     *
+     * @param precision
+     */
+    public void setPrecision(RatingPrecision precision) {
+        Objects.requireNonNull(precision, "precision cannot be null");
+        getState().precision = precision;
+    }
+
+    /**
+     * @return the fractions of a star the user can give
+     * @see #setPrecision(RatingPrecision)
+     */
+    public RatingPrecision getPrecision() {
+        return getState(false).precision;
+    }
+
+    /**
+     * Sets when the values given by the user are sent to the server. With
+     * {@link CommitPolicy#DEBOUNCED} or {@link CommitPolicy#ON_BLUR} only the
+     * last of several values given in a row is sent, and the values of all
+     * components on the page that are ready at the same time are sent in one
+     * request. The default value is {@link CommitPolicy#IMMEDIATE}.
+     *
+     * @param commitPolicy
+     * @see #setCommitDelay(int)
+     */
+    public void setCommitPolicy(CommitPolicy commitPolicy) {
+        Objects.requireNonNull(commitPolicy, "commitPolicy cannot be null");
+        getState().commitPolicy = commitPolicy;
+    }
+
+    /**
+     * @return the policy defining when the values are sent to the server
+     * @see #setCommitPolicy(CommitPolicy)
+     */
+    public CommitPolicy getCommitPolicy() {
+        RatingStarsConfig config = getConfig();
+        return config != null ? config.getCommitPolicy() : getState(false).commitPolicy;
+    }
+
+    /**
+     * Sets the time in milliseconds without new values after which a value is
+     * sent with {@link CommitPolicy#DEBOUNCED}. The default value is 300.
+     *
+     * @param commitDelay
+     *            the delay in milliseconds
+     */
+    public void setCommitDelay(int commitDelay) {
+        if (commitDelay < 0) {
+            throw new IllegalArgumentException("Given commit delay (" + commitDelay + ") must not be negative.");
+        }
+        getState().commitDelay = commitDelay;
+    }
+
+    /**
+     * @return the commit delay in milliseconds
+     * @see #setCommitDelay(int)
+     */
+    public int getCommitDelay() {
+        RatingStarsConfig config = getConfig();
+        return config != null ? config.getCommitDelay() : getState(false).commitDelay;
+    }
+
     @Override
     public int compareTo(RatingStars o) {
         return getValue().compareTo(o.getValue());
     }
 
+    /**
+     * Adds a listener for the value changes made by the user that is called
+     * outside of the session lock using the listener executor. The new value
+     * is accepted and shown right away, so slow listeners, for example ones
+     * writing the vote to a database, don't block the UI. If a listener
+     * throws an exception, the value is rolled back, firing a
+     * {@link RollbackEvent}, and the exception is passed to the error handler
+     * of the component through {@link UI#access(Runnable)}.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     * @see #setListenerExecutor(Executor)
+     */
+    public Registration addAsyncValueChangeListener(AsyncValueChangeListener listener) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+        if (asyncValueChangeListeners == null) {
+            asyncValueChangeListeners = new CopyOnWriteArrayList<>();
+        }
+        List<AsyncValueChangeListener> listeners = asyncValueChangeListeners;
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Sets the filter every value given by the user must pass before it is
+     * set. Rejected values never reach the value change listeners and the
+     * client-side widget is reset to the current value. The filter is
+     * serialized with the component.
+     *
+     * @param voteFilter
+     *            the filter or <code>null</code> to accept all values
+     * @see org.vaadin.teemu.ratingstars.guard.VoteGuard#bind(RatingStars,
+     *      long)
+     */
+    public void setVoteFilter(VoteFilter voteFilter) {
+        this.voteFilter = voteFilter;
+    }
+
+    /**
+     * @return the filter of the values given by the user or
+     *         <code>null</code>
+     */
+    public VoteFilter getVoteFilter() {
+        return voteFilter;
+    }
+
+    /**
+     * Sets the executor calling the asynchronous value change listeners. The
+     * executor is not serialized with the component. By default a shared
+     * executor using virtual threads, when supported by the runtime, or a
+     * pool of daemon threads is used.
+     *
+     * @param listenerExecutor
+     *            the executor or <code>null</code> to use the default
+     * @see #addAsyncValueChangeListener(AsyncValueChangeListener)
+     */
+    public void setListenerExecutor(Executor listenerExecutor) {
+        this.listenerExecutor = listenerExecutor;
+    }
+
+    /**
+     * @return the executor calling the asynchronous value change listeners
+     * @see #setListenerExecutor(Executor)
+     */
+    public Executor getListenerExecutor() {
+        return listenerExecutor != null ? listenerExecutor : DefaultListenerExecutor.INSTANCE;
+    }
+
+    private void dispatchAsync(Double oldValue) {
+        List<AsyncValueChangeListener> listeners = asyncValueChangeListeners;
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+        ValueChangeEvent<Double> event = new ValueChangeEvent<>(this, oldValue, true);
+        UI ui = getUI();
+        getListenerExecutor().execute(() -> {
+            boolean measure = RatingStarsMetrics.enabled();
+            long start = measure ? System.nanoTime() : 0;
+            try {
+                for (AsyncValueChangeListener listener : listeners) {
+                    try {
+                        listener.valueChange(event);
+                    } catch (Exception e) {
+                        rollback(ui, event, e);
+                        return;
+                    }
+                }
+            } finally {
+                if (measure) {
+                    RatingStarsMetrics.get().listenersExecuted(System.nanoTime() - start, true);
+                }
+            }
+        });
+    }
+
+    private void rollback(UI ui, ValueChangeEvent<Double> event, Exception cause) {
+        if (ui == null) {
+            return;
+        }
+        try {
+            ui.access(() -> {
+                // Leave newer values given meanwhile untouched.
+                if (Objects.equals(getValue(), event.getValue())) {
+                    rollingBack = true;
+                    try {
+                        setValue(event.getOldValue(), true);
+                    } finally {
+                        rollingBack = false;
+                    }
+                }
+                ErrorHandler errorHandler = findErrorHandler(this);
+                if (errorHandler != null) {
+                    errorHandler.error(new ConnectorErrorEvent(this, cause));
+                }
+            });
+        } catch (UIDetachedException e) {
+            // Nothing to roll back in a closed UI.
+        }
+    }
+
+    @Override
+    protected ValueChangeEvent<Double> createValueChange(Double oldValue, boolean userOriginated) {
+        if (rollingBack) {
+            return new RollbackEvent(this, oldValue);
+        }
+        return super.createValueChange(oldValue, userOriginated);
+    }
+
+    /**
+     * Sets the value, <code>null</code> being stored as zero, the
+     * {@link #getEmptyValue() empty value}.
+     */
     @Override
     protected void doSetValue(Double value) {
-        getState().value = value;
+        getState().value = value != null ? value : 0.0;
+    }
+
+    /**
+     * Returns zero, the value of a component not rated yet. Setting the value
+     * to <code>null</code> sets it to zero, so {@link #getValue()} never
+     * returns <code>null</code>.
+     *
+     * @return zero
+     */
+    @Override
+    public Double getEmptyValue() {
+        return 0.0;
     }
 
     @Override
@@ -89,7 +600,24 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
      * @see #setValueCaption(String...)
      */
     public void setValueCaption(int value, String captionForValue) {
-        getState().valueCaptions.put(value, captionForValue);
+        String oldCaption = valueCaptions != null ? valueCaptions.get(value) : null;
+        if (Objects.equals(oldCaption, captionForValue)) {
+            return; // unchanged -> nothing to send
+        }
+        if (captionForValue != null) {
+            if (valueCaptions == null) {
+                valueCaptions = new HashMap<>();
+            }
+            valueCaptions.put(value, captionForValue);
+        } else {
+            valueCaptions.remove(value);
+        }
+
+        if (changedValueCaptions == null) {
+            changedValueCaptions = new HashMap<>();
+            markAsDirty();
+        }
+        changedValueCaptions.put(value, captionForValue);
     }
 
     /**
@@ -102,8 +630,80 @@ public class RatingStars extends AbstractField<Double> implements Comparable<Rat
     public void setValueCaption(String... captionsForValues) {
         int value = 1;
         for (String caption : captionsForValues) {
-            getState().valueCaptions.put(value++, caption);
+            setValueCaption(value++, caption);
+        }
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        if (initial) {
+            // the client-side connector is (re)created -> send all captions
+            getState(false).valueCaptions = valueCaptions != null && !valueCaptions.isEmpty()
+                    ? new HashMap<>(valueCaptions)
+                    : null;
+        } else if (changedValueCaptions != null) {
+            getRpcProxy(RatingStarsClientRpc.class).updateValueCaptions(changedValueCaptions);
         }
+        changedValueCaptions = null;
+
+        if (RatingStarsMetrics.enabled()) {
+            String json = encodeStateDiff();
+            if (!"{}".equals(json)) {
+                RatingStarsMetrics.get().stateSent(json.length());
+            }
+        }
+    }
+
+    /**
+     * Encodes the changes of the state the same way as they are sent to the
+     * client, against a default state when the full state is sent.
+     */
+    private String encodeStateDiff() {
+        ConnectorTracker tracker = getUI().getConnectorTracker();
+        Class<? extends SharedState> stateType = getStateType();
+        JsonValue diffState = tracker.getDiffState(this);
+        if (diffState == null) {
+            try {
+                SharedState referenceState = stateType.getDeclaredConstructor().newInstance();
+                diffState = JsonCodec.encode(referenceState, null, stateType, null).getEncodedValue();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a reference state of " + stateType.getName(), e);
+            }
+        }
+        return JsonCodec.encode(getState(false), diffState, stateType, tracker).getDiffOrValue().toJson();
+    }
+
+    /**
+     * Sets a shared set of captions as the displayed descriptions for rating
+     * values. The captions of a set are sent to the client only once per UI,
+     * so using a set is preferred when many components use the same captions.
+     * Captions given with {@link #setValueCaption(int, String)} override the
+     * captions of the set.
+     *
+     * @param captionSet
+     *            the caption set or <code>null</code> to remove
+     */
+    public void setValueCaptionSet(RatingStarsCaptionSet captionSet) {
+        if (getUI() != null) {
+            if (captionSet != null) {
+                RatingStarsCaptionRegistry.get(getUI()).register(captionSet);
+            }
+            if (this.captionSet != null) {
+                RatingStarsCaptionRegistry.get(getUI()).unregister(this.captionSet);
+            }
+        }
+        this.captionSet = captionSet;
+        getState().captionSetId = captionSet != null ? captionSet.getId() : null;
+    }
+
+    /**
+     * @return the shared caption set or <code>null</code> if not set
+     * @see #setValueCaptionSet(RatingStarsCaptionSet)
+     */
+    public RatingStarsCaptionSet getValueCaptionSet() {
+        return captionSet;
     }
 
 }
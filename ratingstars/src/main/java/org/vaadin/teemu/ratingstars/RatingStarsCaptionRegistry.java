@@ -0,0 +1,204 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.server.AbstractExtension;
+import com.vaadin.server.Extension;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsCaptionRegistryState;
+
+/**
+ * UI extension holding the {@link RatingStarsCaptionSet}s and
+ * {@link RatingStarsConfig}s used by the {@link RatingStars} components of a
+ * UI. Each caption set and configuration is sent to the client once and the
+ * components only refer to it by its id. The registrations are counted, and a
+ * caption set or configuration is removed once the last component using it
+ * has unregistered it.
+ * <p>
+ * Each UI has a registry of its own, so {@link #update(RatingStarsConfig)}
+ * changes the configuration only in one UI. Use
+ * {@link #updateAll(VaadinSession, RatingStarsConfig)} for all UIs of a
+ * session; updating the UIs of other sessions requires tracking them, for
+ * example like {@link org.vaadin.teemu.ratingstars.aggregate.RatingBroadcaster}
+ * tracks its displays.
+ */
+public class RatingStarsCaptionRegistry extends AbstractExtension {
+    private static final long serialVersionUID = 7164027375069580453L;
+
+    private final Map<String, RatingStarsConfig> configs = new HashMap<>();
+    private final Map<String, Integer> captionSetUsers = new HashMap<>();
+    private final Map<String, Integer> configUsers = new HashMap<>();
+
+    private RatingStarsCaptionRegistry() {
+    }
+
+    /**
+     * Returns the registry of the given UI, creating it if needed.
+     *
+     * @param ui
+     * @return the caption registry of the UI
+     */
+    public static RatingStarsCaptionRegistry get(UI ui) {
+        RatingStarsCaptionRegistry registry = find(ui);
+        if (registry == null) {
+            registry = new RatingStarsCaptionRegistry();
+            registry.extend(ui);
+        }
+        return registry;
+    }
+
+    private static RatingStarsCaptionRegistry find(UI ui) {
+        for (Extension extension : ui.getExtensions()) {
+            if (extension instanceof RatingStarsCaptionRegistry) {
+                return (RatingStarsCaptionRegistry) extension;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the configuration with the same id in all UIs of the session
+     * that have it registered. The UIs are updated with
+     * {@link VaadinSession#access(Runnable)}, so this may be called from any
+     * thread.
+     *
+     * @param session
+     * @param config
+     */
+    public static void updateAll(VaadinSession session, RatingStarsConfig config) {
+        session.access(() -> {
+            for (UI ui : session.getUIs()) {
+                RatingStarsCaptionRegistry registry = find(ui);
+                if (registry != null && registry.configs.containsKey(config.getId())) {
+                    registry.update(config);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers the given caption set for a component using it. The captions
+     * are sent to the client only when the first component registers them.
+     *
+     * @param captionSet
+     * @throws IllegalStateException
+     *             if another caption set with the same id but different
+     *             captions is already registered
+     * @see #unregister(RatingStarsCaptionSet)
+     */
+    public void register(RatingStarsCaptionSet captionSet) {
+        Map<Integer, String> registered = getState(false).captionSets.get(captionSet.getId());
+        if (registered == null) {
+            getState().captionSets.put(captionSet.getId(), captionSet.getCaptions());
+        } else if (!registered.equals(captionSet.getCaptions())) {
+            throw new IllegalStateException("A different caption set with id \"" + captionSet.getId()
+                    + "\" is already registered.");
+        }
+        captionSetUsers.merge(captionSet.getId(), 1, Integer::sum);
+    }
+
+    /**
+     * Unregisters the given caption set for a component no longer using it.
+     * The captions are removed when no component uses them.
+     *
+     * @param captionSet
+     */
+    public void unregister(RatingStarsCaptionSet captionSet) {
+        if (release(captionSetUsers, captionSet.getId())) {
+            getState().captionSets.remove(captionSet.getId());
+        }
+    }
+
+    /**
+     * Registers the given configuration and its caption set for a component
+     * using it, unless a configuration with the same id is already
+     * registered.
+     *
+     * @param config
+     * @see #update(RatingStarsConfig)
+     * @see #unregister(RatingStarsConfig)
+     */
+    public void register(RatingStarsConfig config) {
+        if (!configs.containsKey(config.getId())) {
+            update(config);
+        }
+        configUsers.merge(config.getId(), 1, Integer::sum);
+    }
+
+    /**
+     * Unregisters the configuration with the id of the given one for a
+     * component no longer using it. The configuration and its caption set
+     * are removed when no component uses them.
+     *
+     * @param config
+     */
+    public void unregister(RatingStarsConfig config) {
+        if (release(configUsers, config.getId())) {
+            RatingStarsConfig registered = configs.remove(config.getId());
+            getState().configs.remove(config.getId());
+            if (registered != null && registered.getCaptionSet() != null) {
+                unregister(registered.getCaptionSet());
+            }
+        }
+    }
+
+    /**
+     * Decrements the number of users of the given id.
+     *
+     * @return <code>true</code> if the last user was released
+     */
+    private static boolean release(Map<String, Integer> users, String id) {
+        Integer count = users.get(id);
+        if (count == null) {
+            return false;
+        }
+        if (count > 1) {
+            users.put(id, count - 1);
+            return false;
+        }
+        users.remove(id);
+        return true;
+    }
+
+    /**
+     * Registers the given configuration replacing the one with the same id,
+     * which updates all components of the UI using the configuration. Only
+     * the UI of this registry is updated. A configuration not used by any
+     * component stays registered until a component using it is detached.
+     *
+     * @param config
+     * @see #updateAll(VaadinSession, RatingStarsConfig)
+     */
+    public void update(RatingStarsConfig config) {
+        if (config.getCaptionSet() != null) {
+            register(config.getCaptionSet());
+        }
+        RatingStarsConfig previous = configs.put(config.getId(), config);
+        if (previous != null && previous.getCaptionSet() != null) {
+            unregister(previous.getCaptionSet());
+        }
+        getState().configs.put(config.getId(), config.toState());
+    }
+
+    /**
+     * @param configId
+     * @return the configuration registered with the given id or
+     *         <code>null</code>
+     */
+    public RatingStarsConfig getConfig(String configId) {
+        return configs.get(configId);
+    }
+
+    @Override
+    protected RatingStarsCaptionRegistryState getState() {
+        return (RatingStarsCaptionRegistryState) super.getState();
+    }
+
+    @Override
+    protected RatingStarsCaptionRegistryState getState(boolean markAsDirty) {
+        return (RatingStarsCaptionRegistryState) super.getState(markAsDirty);
+    }
+
+}
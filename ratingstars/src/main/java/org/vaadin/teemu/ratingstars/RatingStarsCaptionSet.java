@@ -0,0 +1,71 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, named set of value captions that can be shared by any number
+ * of {@link RatingStars} components. The captions are sent to the client only
+ * once per UI and each component refers to them by the id of the set.
+ *
+ * @see RatingStars#setValueCaptionSet(RatingStarsCaptionSet)
+ */
+public final class RatingStarsCaptionSet implements Serializable {
+    private static final long serialVersionUID = -1874357690284116328L;
+
+    private final String id;
+    private final Map<Integer, String> captions;
+
+    /**
+     * Constructs a new caption set with the given captions for rating values
+     * in sequence starting from 1.
+     *
+     * @param id
+     *            unique id of this caption set
+     * @param captionsForValues
+     */
+    public RatingStarsCaptionSet(String id, String... captionsForValues) {
+        this(id, toMap(captionsForValues));
+    }
+
+    /**
+     * Constructs a new caption set with the given captions by rating values.
+     *
+     * @param id
+     *            unique id of this caption set
+     * @param captionsForValues
+     */
+    public RatingStarsCaptionSet(String id, Map<Integer, String> captionsForValues) {
+        if (id == null) {
+            throw new IllegalArgumentException("Caption set id must not be null.");
+        }
+        this.id = id;
+        this.captions = Collections.unmodifiableMap(new HashMap<>(captionsForValues));
+    }
+
+    private static Map<Integer, String> toMap(String... captionsForValues) {
+        Map<Integer, String> captions = new HashMap<>();
+        int value = 1;
+        for (String caption : captionsForValues) {
+            captions.put(value++, caption);
+        }
+        return captions;
+    }
+
+    /**
+     * @return the unique id of this caption set
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return an unmodifiable map of the captions by rating values
+     */
+    public Map<Integer, String> getCaptions() {
+        return captions;
+    }
+
+}
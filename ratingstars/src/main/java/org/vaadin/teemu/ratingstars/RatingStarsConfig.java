@@ -0,0 +1,170 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.vaadin.teemu.ratingstars.gwt.client.CommitPolicy;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsConfigState;
+
+/**
+ * An immutable, named configuration that can be shared by any number of
+ * {@link RatingStars} components. Like a {@link RatingStarsCaptionSet}, the
+ * configuration is sent to the client only once per UI and each component
+ * refers to it by its id, so the state of a component is reduced to its value
+ * and the id.
+ * <p>
+ * The <code>with</code> methods return a modified copy. To change the
+ * configuration of all components of a UI sharing it, pass the copy to
+ * {@link RatingStarsCaptionRegistry#update(RatingStarsConfig)}.
+ *
+ * @see RatingStars#setConfig(RatingStarsConfig)
+ */
+public final class RatingStarsConfig implements Serializable {
+    private static final long serialVersionUID = 6093718245510937712L;
+
+    private final String id;
+    private final int maxValue;
+    private final boolean animated;
+    private final RatingStarsCaptionSet captionSet;
+    private final String styleName;
+    private final CommitPolicy commitPolicy;
+    private final int commitDelay;
+
+    /**
+     * Constructs a new configuration with the defaults of a RatingStars
+     * component: maximum value of five, animated, no captions or style name
+     * and {@link CommitPolicy#IMMEDIATE}.
+     *
+     * @param id
+     *            unique id of this configuration
+     */
+    public RatingStarsConfig(String id) {
+        this(id, 5, true, null, null, CommitPolicy.IMMEDIATE, 300);
+    }
+
+    private RatingStarsConfig(String id, int maxValue, boolean animated, RatingStarsCaptionSet captionSet,
+            String styleName, CommitPolicy commitPolicy, int commitDelay) {
+        if (id == null) {
+            throw new IllegalArgumentException("Config id must not be null.");
+        }
+        this.id = id;
+        this.maxValue = maxValue;
+        this.animated = animated;
+        this.captionSet = captionSet;
+        this.styleName = styleName;
+        this.commitPolicy = commitPolicy;
+        this.commitDelay = commitDelay;
+    }
+
+    /**
+     * @param maxValue
+     * @return a copy of this configuration with the given maximum value
+     * @see RatingStars#setMaxValue(int)
+     */
+    public RatingStarsConfig withMaxValue(int maxValue) {
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("Given maximum value (" + maxValue + ") must be greater than zero.");
+        }
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @param animated
+     * @return a copy of this configuration with the given animation setting
+     * @see RatingStars#setAnimated(boolean)
+     */
+    public RatingStarsConfig withAnimated(boolean animated) {
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @param captionSet
+     *            the caption set or <code>null</code> for no captions
+     * @return a copy of this configuration with the given caption set
+     * @see RatingStars#setValueCaptionSet(RatingStarsCaptionSet)
+     */
+    public RatingStarsConfig withCaptionSet(RatingStarsCaptionSet captionSet) {
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @param styleName
+     *            style name added to the components or <code>null</code>
+     * @return a copy of this configuration with the given style name
+     */
+    public RatingStarsConfig withStyleName(String styleName) {
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @param commitPolicy
+     * @return a copy of this configuration with the given commit policy
+     * @see RatingStars#setCommitPolicy(CommitPolicy)
+     */
+    public RatingStarsConfig withCommitPolicy(CommitPolicy commitPolicy) {
+        Objects.requireNonNull(commitPolicy, "commitPolicy cannot be null");
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @param commitDelay
+     *            the delay in milliseconds
+     * @return a copy of this configuration with the given commit delay
+     * @see RatingStars#setCommitDelay(int)
+     */
+    public RatingStarsConfig withCommitDelay(int commitDelay) {
+        if (commitDelay < 0) {
+            throw new IllegalArgumentException("Given commit delay (" + commitDelay + ") must not be negative.");
+        }
+        return new RatingStarsConfig(id, maxValue, animated, captionSet, styleName, commitPolicy, commitDelay);
+    }
+
+    /**
+     * @return the unique id of this configuration
+     */
+    public String getId() {
+        return id;
+    }
+
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * @return the caption set or <code>null</code>
+     */
+    public RatingStarsCaptionSet getCaptionSet() {
+        return captionSet;
+    }
+
+    /**
+     * @return the style name or <code>null</code>
+     */
+    public String getStyleName() {
+        return styleName;
+    }
+
+    public CommitPolicy getCommitPolicy() {
+        return commitPolicy;
+    }
+
+    public int getCommitDelay() {
+        return commitDelay;
+    }
+
+    RatingStarsConfigState toState() {
+        RatingStarsConfigState state = new RatingStarsConfigState();
+        state.maxValue = maxValue;
+        state.animated = animated;
+        state.captionSetId = captionSet != null ? captionSet.getId() : null;
+        state.styleName = styleName;
+        state.commitPolicy = commitPolicy;
+        state.commitDelay = commitDelay;
+        return state;
+    }
+
+}
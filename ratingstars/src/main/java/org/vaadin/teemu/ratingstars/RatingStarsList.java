@@ -0,0 +1,187 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.util.Collection;
+
+import com.vaadin.data.ValueProvider;
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.server.Setter;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.CustomComponent;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.Grid.Column;
+import com.vaadin.ui.Grid.SelectionMode;
+import org.vaadin.teemu.ratingstars.RatingStarsRenderer.RatingChangeListener;
+
+/**
+ * A list of items with a caption and the rating stars on each row, for
+ * replacing a layout with a {@link RatingStars} component per item. The items
+ * are fetched from a {@link DataProvider} in pages as the user scrolls and
+ * only the visible rows are drawn, using a {@link RatingStarsRenderer} inside
+ * a {@link Grid}. The number of server-side components and the memory used
+ * thus stay the same regardless of the number of items.
+ * <p>
+ * The ratings given by the user are reported to the
+ * {@link #addRatingChangeListener(RatingChangeListener) listeners} with the
+ * item of the row, and written to the item with the
+ * {@link #setRatingSetter(Setter) rating setter} if one is set.
+ *
+ * @param <T>
+ *            the type of the items
+ */
+public class RatingStarsList<T> extends CustomComponent {
+    private static final long serialVersionUID = 2750945376518429207L;
+
+    private final Grid<T> grid = new Grid<>();
+    private final RatingStarsRenderer<T> renderer = new RatingStarsRenderer<>();
+    private final Column<T, String> captionColumn;
+    private final Column<T, Double> ratingColumn;
+    private Setter<T, Double> ratingSetter;
+
+    /**
+     * Constructs a new list showing the given caption and rating of each
+     * item.
+     *
+     * @param captionProvider
+     *            provides the caption of an item
+     * @param ratingProvider
+     *            provides the rating of an item
+     */
+    public RatingStarsList(ValueProvider<T, String> captionProvider, ValueProvider<T, Double> ratingProvider) {
+        grid.setSelectionMode(SelectionMode.NONE);
+        grid.setSizeFull();
+        captionColumn = grid.addColumn(captionProvider).setExpandRatio(1);
+        ratingColumn = grid.addColumn(ratingProvider, renderer).setSortable(false);
+
+        renderer.addRatingChangeListener(event -> {
+            if (ratingSetter != null) {
+                ratingSetter.accept(event.getItem(), event.getValue());
+                grid.getDataProvider().refreshItem(event.getItem());
+            }
+        });
+
+        setCompositionRoot(grid);
+        setWidth("100%");
+        setHeight("400px");
+    }
+
+    /**
+     * Sets the data provider of the items. The items are fetched in pages as
+     * the rows become visible.
+     *
+     * @param dataProvider
+     */
+    public void setDataProvider(DataProvider<T, ?> dataProvider) {
+        grid.setDataProvider(dataProvider);
+    }
+
+    /**
+     * @return the data provider of the items
+     */
+    public DataProvider<T, ?> getDataProvider() {
+        return grid.getDataProvider();
+    }
+
+    /**
+     * Sets the items of the list using an in-memory data provider.
+     *
+     * @param items
+     */
+    public void setItems(Collection<T> items) {
+        grid.setItems(items);
+    }
+
+    /**
+     * Sets the setter writing the ratings given by the user to the items.
+     * The row of the item is refreshed after the rating is written.
+     *
+     * @param ratingSetter
+     *            the setter or <code>null</code> to only notify the listeners
+     */
+    public void setRatingSetter(Setter<T, Double> ratingSetter) {
+        this.ratingSetter = ratingSetter;
+    }
+
+    /**
+     * @return the setter of the ratings or <code>null</code>
+     * @see #setRatingSetter(Setter)
+     */
+    public Setter<T, Double> getRatingSetter() {
+        return ratingSetter;
+    }
+
+    /**
+     * Adds a listener notified when the user gives a rating for an item.
+     * Called after the rating setter.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addRatingChangeListener(RatingChangeListener<T> listener) {
+        return renderer.addRatingChangeListener(listener);
+    }
+
+    /**
+     * Sets the maximum value (rating) the user can give. The default value is
+     * five.
+     *
+     * @param maxValue
+     */
+    public void setMaxValue(int maxValue) {
+        renderer.setMaxValue(maxValue);
+    }
+
+    /**
+     * @return the maximum value (rating) the user can give
+     */
+    public int getMaxValue() {
+        return renderer.getMaxValue();
+    }
+
+    /**
+     * Sets whether the ratings can be changed by the user. The default value
+     * is <code>false</code>. Controls the {@link RatingStarsRenderer} of the
+     * rating column, which then ignores the clicks on the stars. Overridden
+     * to make the method public, as it's protected in
+     * {@link AbstractComponent}.
+     *
+     * @param readOnly
+     */
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        super.setReadOnly(readOnly);
+        renderer.setReadOnly(readOnly);
+    }
+
+    /**
+     * @return <code>true</code> if the ratings can't be changed by the user
+     * @see #setReadOnly(boolean)
+     */
+    @Override
+    public boolean isReadOnly() {
+        return super.isReadOnly();
+    }
+
+    /**
+     * @return the column of the item captions, for example for setting the
+     *         header caption
+     */
+    public Column<T, String> getCaptionColumn() {
+        return captionColumn;
+    }
+
+    /**
+     * @return the column of the ratings
+     */
+    public Column<T, Double> getRatingColumn() {
+        return ratingColumn;
+    }
+
+    /**
+     * @return the Grid used for showing the items
+     */
+    public Grid<T> getGrid() {
+        return grid;
+    }
+
+}
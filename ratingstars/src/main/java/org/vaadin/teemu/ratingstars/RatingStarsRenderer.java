@@ -0,0 +1,179 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.lang.reflect.Method;
+import java.util.EventObject;
+
+import com.vaadin.event.ConnectorEventListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.Grid.Column;
+import com.vaadin.ui.renderers.AbstractRenderer;
+import com.vaadin.util.ReflectTools;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsRendererServerRpc;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsRendererState;
+
+/**
+ * A Grid renderer drawing the rating stars inside the cells of a column. Unlike
+ * using a {@link RatingStars} component per row, there are no server-side
+ * components and only one RPC registration per column. Clicks on the stars are
+ * reported as {@link RatingChangeEvent}s.
+ *
+ * @param <T>
+ *            the type of the Grid items
+ */
+public class RatingStarsRenderer<T> extends AbstractRenderer<T, Double> {
+    private static final long serialVersionUID = -2883146232516212434L;
+
+    /**
+     * Listener notified when the user gives a rating through the renderer.
+     *
+     * @param <T>
+     *            the type of the Grid items
+     */
+    @FunctionalInterface
+    public interface RatingChangeListener<T> extends ConnectorEventListener {
+
+        Method RATING_CHANGE_METHOD = ReflectTools.findMethod(
+                RatingChangeListener.class, "ratingChange",
+                RatingChangeEvent.class);
+
+        void ratingChange(RatingChangeEvent<T> event);
+    }
+
+    /**
+     * Event fired when the user clicks a star in a cell rendered by
+     * {@link RatingStarsRenderer}.
+     *
+     * @param <T>
+     *            the type of the Grid items
+     */
+    public static class RatingChangeEvent<T> extends EventObject {
+        private static final long serialVersionUID = 4373569207093812474L;
+
+        private final T item;
+        private final Column<T, ?> column;
+        private final double value;
+
+        protected RatingChangeEvent(Grid<T> source, T item,
+                Column<T, ?> column, double value) {
+            super(source);
+            this.item = item;
+            this.column = column;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Grid<T> getSource() {
+            return (Grid<T>) super.getSource();
+        }
+
+        /**
+         * @return the item of the row where the rating was given
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * @return the column rendered by the renderer
+         */
+        public Column<T, ?> getColumn() {
+            return column;
+        }
+
+        /**
+         * @return the new rating value
+         */
+        public double getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Constructs a new RatingStarsRenderer with default maximum value of five.
+     */
+    public RatingStarsRenderer() {
+        super(Double.class, null);
+        registerRpc((RatingStarsRendererServerRpc) (rowKey, columnId,
+                newValue) -> {
+            // ignore values a modified or outdated client could send, NaN fails the comparisons
+            if (getState(false).readOnly || !(newValue >= 1 && newValue <= getMaxValue())) {
+                return;
+            }
+            Grid<T> grid = getParentGrid();
+            T item = grid.getDataCommunicator().getKeyMapper().get(rowKey);
+            if (item != null) {
+                fireEvent(new RatingChangeEvent<>(grid, item, getParent(),
+                        newValue));
+            }
+        });
+    }
+
+    @Override
+    protected RatingStarsRendererState getState() {
+        return (RatingStarsRendererState) super.getState();
+    }
+
+    @Override
+    protected RatingStarsRendererState getState(boolean markAsDirty) {
+        return (RatingStarsRendererState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Sets the maximum value (rating) the user can give. The default value is
+     * five.
+     *
+     * @param maxValue
+     */
+    public void setMaxValue(int maxValue) {
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("Given maximum value (" + maxValue + ") must be greater than zero.");
+        }
+        if (getState(false).maxValue != maxValue) {
+            getState().maxValue = maxValue;
+            if (getParent() != null) {
+                // re-render the already sent rows
+                getParentGrid().getDataCommunicator().reset();
+            }
+        }
+    }
+
+    /**
+     * @return the maximum value (rating) the user can give
+     */
+    public int getMaxValue() {
+        return getState(false).maxValue;
+    }
+
+    /**
+     * Sets whether the ratings can be changed by clicking the stars. The
+     * default value is <code>false</code>.
+     *
+     * @param readOnly
+     */
+    public void setReadOnly(boolean readOnly) {
+        getState().readOnly = readOnly;
+    }
+
+    /**
+     * @return <code>true</code> if the ratings can't be changed by the user
+     */
+    public boolean isReadOnly() {
+        return getState(false).readOnly;
+    }
+
+    /**
+     * Adds a listener notified when the user gives a rating through this
+     * renderer.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addRatingChangeListener(
+            RatingChangeListener<T> listener) {
+        return addListener(RatingChangeEvent.class, listener,
+                RatingChangeListener.RATING_CHANGE_METHOD);
+    }
+
+}
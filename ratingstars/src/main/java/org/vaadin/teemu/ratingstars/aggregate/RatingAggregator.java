@@ -0,0 +1,746 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.vaadin.data.HasValue.ValueChangeEvent;
+import com.vaadin.data.HasValue.ValueChangeListener;
+import com.vaadin.server.ClientConnector.AttachEvent;
+import com.vaadin.server.ClientConnector.AttachListener;
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+import org.vaadin.teemu.ratingstars.RatingDistribution;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.store.MappedLogRatingStore;
+import org.vaadin.teemu.ratingstars.store.RatingStore;
+import org.vaadin.teemu.ratingstars.store.RatingVote;
+
+/**
+ * Thread-safe aggregator of the votes given for items across all sessions.
+ * The votes of each item are kept as a histogram of striped counters indexed
+ * by the rating step, so concurrent votes for the same item don't contend on a
+ * lock. Summaries are computed from the histogram on demand and are weakly
+ * consistent with votes given at the same time.
+ * <p>
+ * An aggregator is usually shared by the whole application. Votes are fed to
+ * it by {@link #bind(RatingStars, long) binding} the RatingStars components
+ * used for voting, and read-only components displaying the average can be
+ * bound with {@link #bindAverage(RatingStars, long)}.
+ * <p>
+ * The bindings refer to the aggregator by its {@link #getName() name}, so
+ * serializing a session with bound components doesn't serialize the
+ * aggregator, and the components of a deserialized session keep voting for
+ * the aggregator constructed with the same name in the JVM they were
+ * deserialized in. Give an aggregator a name of its own if the sessions are
+ * replicated to other JVMs.
+ * <p>
+ * Serializing an aggregator restored from a {@link RatingSnapshot} first
+ * loads all items of the snapshot, which is not serialized itself.
+ */
+public class RatingAggregator implements Serializable {
+    private static final long serialVersionUID = -3712394720139745238L;
+
+    /** Aggregators of this JVM by name, referred to by the bindings. */
+    private static final ConcurrentMap<String, WeakReference<RatingAggregator>> INSTANCES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxValue;
+    private final int stepsPerValue;
+    private final ConcurrentMap<Long, LongAdder[]> items = new ConcurrentHashMap<>();
+    private transient List<ItemChangeListener> itemChangeListeners = new CopyOnWriteArrayList<>();
+    private transient ConcurrentMap<Long, Set<Runnable>> itemDisplays = new ConcurrentHashMap<>();
+    private transient volatile RatingStore store;
+    private transient volatile RatingSnapshot snapshot;
+
+    /**
+     * Listener notified when the votes of an item change.
+     */
+    @FunctionalInterface
+    public interface ItemChangeListener {
+
+        /**
+         * Called on the voting thread right after the votes of the item have
+         * changed. Implementations should return quickly.
+         *
+         * @param itemId
+         */
+        void itemChanged(long itemId);
+    }
+
+    /**
+     * Refers to the aggregator by name, so the binding can be serialized
+     * without the aggregator.
+     */
+    private abstract static class Binding implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String aggregatorName;
+        final long itemId;
+        private transient RatingAggregator aggregator;
+
+        private Binding(RatingAggregator aggregator, long itemId) {
+            this.aggregatorName = aggregator.name;
+            this.itemId = itemId;
+            this.aggregator = aggregator;
+        }
+
+        String getAggregatorName() {
+            return aggregatorName;
+        }
+
+        /**
+         * @throws IllegalStateException
+         *             if the binding was deserialized in a JVM without an
+         *             aggregator of the same name
+         */
+        RatingAggregator aggregator() {
+            RatingAggregator aggregator = this.aggregator;
+            if (aggregator == null) {
+                aggregator = forName(aggregatorName);
+                if (aggregator == null) {
+                    throw new IllegalStateException("No aggregator named " + aggregatorName + " exists.");
+                }
+                this.aggregator = aggregator;
+            }
+            return aggregator;
+        }
+    }
+
+    /** Records the ratings given through a component. */
+    private static class VoteBinding extends Binding implements ValueChangeListener<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private VoteBinding(RatingAggregator aggregator, long itemId) {
+            super(aggregator, itemId);
+        }
+
+        @Override
+        public void valueChange(ValueChangeEvent<Double> event) {
+            if (event.isUserOriginated()) {
+                aggregator().changeVote(itemId, toRating(event.getOldValue()), toRating(event.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Updates a component whenever the votes of the item change while the
+     * component is attached.
+     */
+    private abstract static class DisplayBinding extends Binding implements AttachListener, DetachListener {
+        private static final long serialVersionUID = 1L;
+
+        private final Component component;
+        private boolean subscribed;
+        private transient Registration subscription;
+
+        private DisplayBinding(RatingAggregator aggregator, long itemId, Component component) {
+            super(aggregator, itemId);
+            this.component = component;
+        }
+
+        /**
+         * Updates the component, called with the session locked.
+         */
+        abstract void update(RatingAggregator aggregator);
+
+        Registration bind() {
+            update(aggregator());
+            Registration attach = component.addAttachListener(this);
+            Registration detach = component.addDetachListener(this);
+            if (component.isAttached()) {
+                subscribe();
+            }
+            return () -> {
+                attach.remove();
+                detach.remove();
+                unsubscribe();
+            };
+        }
+
+        @Override
+        public void attach(AttachEvent event) {
+            update(aggregator());
+            subscribe();
+        }
+
+        @Override
+        public void detach(DetachEvent event) {
+            unsubscribe();
+        }
+
+        private void subscribe() {
+            if (subscription == null) {
+                subscription = aggregator().addItemDisplay(itemId, this::changed);
+            }
+            subscribed = true;
+        }
+
+        private void unsubscribe() {
+            if (subscription != null) {
+                subscription.remove();
+                subscription = null;
+            }
+            subscribed = false;
+        }
+
+        private void changed() {
+            UI ui = component.getUI();
+            if (ui != null) {
+                try {
+                    ui.access(() -> update(aggregator()));
+                } catch (UIDetachedException e) {
+                    // UI was closed while the votes changed
+                }
+            }
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            // subscribed again on the next attach if the aggregator doesn't
+            // exist yet
+            if (subscribed && forName(getAggregatorName()) != null) {
+                subscribe();
+            }
+        }
+    }
+
+    private static class AverageBinding extends DisplayBinding {
+        private static final long serialVersionUID = 1L;
+
+        private final RatingStars display;
+
+        private AverageBinding(RatingAggregator aggregator, long itemId, RatingStars display) {
+            super(aggregator, itemId, display);
+            this.display = display;
+        }
+
+        @Override
+        void update(RatingAggregator aggregator) {
+            display.setValue(aggregator.getAverage(itemId));
+        }
+    }
+
+    private static class DistributionBinding extends DisplayBinding {
+        private static final long serialVersionUID = 1L;
+
+        private final RatingDistribution display;
+
+        private DistributionBinding(RatingAggregator aggregator, long itemId, RatingDistribution display) {
+            super(aggregator, itemId, display);
+            this.display = display;
+        }
+
+        @Override
+        void update(RatingAggregator aggregator) {
+            display.setCounts(aggregator.getSummary(itemId).getCounts());
+        }
+    }
+
+    /**
+     * Constructs a new aggregator for whole-star ratings from 1 to the given
+     * maximum value.
+     *
+     * @param maxValue
+     *            the maximum rating value
+     */
+    public RatingAggregator(int maxValue) {
+        this(maxValue, 1);
+    }
+
+    /**
+     * Constructs a new aggregator for ratings from 1 to the given maximum value
+     * in steps of <code>1 / stepsPerValue</code>. For example two steps per
+     * value allow half-star ratings.
+     *
+     * @param maxValue
+     *            the maximum rating value
+     * @param stepsPerValue
+     *            number of rating steps per whole value
+     */
+    public RatingAggregator(int maxValue, int stepsPerValue) {
+        this(UUID.randomUUID().toString(), maxValue, stepsPerValue);
+    }
+
+    /**
+     * Constructs a new aggregator with the given name for ratings from 1 to
+     * the given maximum value in steps of <code>1 / stepsPerValue</code>. The
+     * name identifies the aggregator to the components bound to it in a
+     * replicated session, so it should be the same in all JVMs of the
+     * application. An aggregator constructed later with the same name
+     * replaces this one.
+     *
+     * @param name
+     *            name of the aggregator
+     * @param maxValue
+     *            the maximum rating value
+     * @param stepsPerValue
+     *            number of rating steps per whole value
+     * @see #forName(String)
+     */
+    public RatingAggregator(String name, int maxValue, int stepsPerValue) {
+        if (name == null) {
+            throw new IllegalArgumentException("Given name must not be null.");
+        }
+        if (maxValue <= 0) {
+            throw new IllegalArgumentException("Given maximum value (" + maxValue + ") must be greater than zero.");
+        }
+        if (stepsPerValue <= 0) {
+            throw new IllegalArgumentException("Given steps per value (" + stepsPerValue + ") must be greater than zero.");
+        }
+        this.name = name;
+        this.maxValue = maxValue;
+        this.stepsPerValue = stepsPerValue;
+        INSTANCES.values().removeIf(reference -> reference.get() == null);
+        INSTANCES.put(name, new WeakReference<>(this));
+    }
+
+    /**
+     * Returns the aggregator constructed with the given name in this JVM.
+     * Deserialized copies of aggregators are not returned.
+     *
+     * @param name
+     * @return the aggregator or <code>null</code> if there is none
+     */
+    public static RatingAggregator forName(String name) {
+        WeakReference<RatingAggregator> reference = INSTANCES.get(name);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * @return the name of this aggregator, generated if it was not given
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the maximum rating value
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @return number of rating steps per whole value
+     */
+    public int getStepsPerValue() {
+        return stepsPerValue;
+    }
+
+    /**
+     * @return total number of rating steps
+     */
+    public int getStepCount() {
+        return maxValue * stepsPerValue;
+    }
+
+    /**
+     * Returns the rating step of the given rating value, rounding to the
+     * closest step.
+     *
+     * @param rating
+     * @return the step from <code>1</code> to {@link #getStepCount()} or
+     *         <code>0</code> if the rating is not a vote (zero or less)
+     */
+    public int toStep(double rating) {
+        if (rating <= 0) {
+            return 0;
+        }
+        int step = (int) Math.round(rating * stepsPerValue);
+        return Math.max(1, Math.min(getStepCount(), step));
+    }
+
+    /**
+     * Records a new vote for the given item.
+     *
+     * @param itemId
+     * @param rating
+     *            the given rating, zero or less is ignored
+     */
+    public void addVote(long itemId, double rating) {
+        int step = toStep(rating);
+        if (step != 0) {
+            add(itemId, step, 1);
+            report(new RatingVote(itemId, 0.0, rating));
+        }
+    }
+
+    /**
+     * Removes a previously recorded vote of the given item.
+     *
+     * @param itemId
+     * @param rating
+     *            the rating of the removed vote, zero or less is ignored
+     */
+    public void removeVote(long itemId, double rating) {
+        int step = toStep(rating);
+        if (step != 0) {
+            add(itemId, step, -1);
+            report(new RatingVote(itemId, rating, 0.0));
+        }
+    }
+
+    /**
+     * Replaces a previously recorded vote of the given item with a new one.
+     *
+     * @param itemId
+     * @param oldRating
+     *            rating of the previous vote or zero if there was none
+     * @param newRating
+     *            rating of the new vote or zero to only remove the old vote
+     */
+    public void changeVote(long itemId, double oldRating, double newRating) {
+        int oldStep = toStep(oldRating);
+        int newStep = toStep(newRating);
+        if (oldStep != newStep) {
+            add(itemId, oldStep, -1);
+            add(itemId, newStep, 1);
+            report(new RatingVote(itemId, oldRating, newRating));
+        }
+    }
+
+    /**
+     * Applies a vote read from a store without reporting it back to the
+     * store, for example to restore the aggregator when the application
+     * starts.
+     *
+     * @param vote
+     */
+    public void apply(RatingVote vote) {
+        add(vote.getItemId(), toStep(vote.getPreviousRating()), -vote.getWeight());
+        add(vote.getItemId(), toStep(vote.getRating()), vote.getWeight());
+    }
+
+    /**
+     * Sets the store the votes recorded by this aggregator are reported to.
+     * Votes added directly with {@link #add(long, int, long)} or
+     * {@link #apply(RatingVote)} are not reported. The store is not
+     * serialized with the aggregator.
+     *
+     * @param store
+     *            the store or <code>null</code> to not persist the votes
+     */
+    public void setStore(RatingStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the store the votes are reported to or <code>null</code>
+     */
+    public RatingStore getStore() {
+        return store;
+    }
+
+    private void report(RatingVote vote) {
+        RatingStore store = this.store;
+        if (store != null) {
+            store.store(vote);
+        }
+    }
+
+    /**
+     * Adds the given number of votes to a step of the item.
+     *
+     * @param itemId
+     * @param step
+     *            the step from <code>1</code> to {@link #getStepCount()},
+     *            <code>0</code> is ignored
+     * @param votes
+     *            number of votes to add, negative to remove votes
+     */
+    public void add(long itemId, int step, long votes) {
+        if (step == 0 || votes == 0) {
+            return;
+        }
+        if (step < 0 || step > getStepCount()) {
+            throw new IllegalArgumentException("Given step (" + step + ") must be between 1 and " + getStepCount() + ".");
+        }
+        getCounters(itemId)[step - 1].add(votes);
+        for (ItemChangeListener listener : itemChangeListeners) {
+            listener.itemChanged(itemId);
+        }
+        Set<Runnable> displays = itemDisplays.get(itemId);
+        if (displays != null) {
+            for (Runnable display : displays) {
+                display.run();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener notified when the votes of any item change. The
+     * listeners are not serialized with the aggregator.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addItemChangeListener(ItemChangeListener listener) {
+        itemChangeListeners.add(listener);
+        return () -> itemChangeListeners.remove(listener);
+    }
+
+    /**
+     * Adds a display run on the voting thread when the votes of the item
+     * change. Unlike the item change listeners, only the displays of the
+     * changed item are run.
+     */
+    private Registration addItemDisplay(long itemId, Runnable display) {
+        itemDisplays.compute(itemId, (id, set) -> {
+            Set<Runnable> displays = set != null ? set : ConcurrentHashMap.<Runnable> newKeySet();
+            displays.add(display);
+            return displays;
+        });
+        return () -> itemDisplays.computeIfPresent(itemId, (id, set) -> {
+            set.remove(display);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    LongAdder[] getCounters(long itemId) {
+        LongAdder[] counters = items.get(itemId);
+        if (counters == null) {
+            counters = items.computeIfAbsent(itemId, this::newCounters);
+        }
+        return counters;
+    }
+
+    private LongAdder[] newCounters(long itemId) {
+        LongAdder[] counters = new LongAdder[getStepCount()];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        // lazily load the item restored from a snapshot
+        RatingSnapshot snapshot = this.snapshot;
+        int index = snapshot != null ? snapshot.indexOf(itemId) : -1;
+        if (index >= 0) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i].add(snapshot.getCount(index, i));
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Returns a summary of the votes given for the item.
+     *
+     * @param itemId
+     * @return the summary, never <code>null</code>
+     */
+    public RatingSummary getSummary(long itemId) {
+        long[] counts = new long[getStepCount()];
+        LongAdder[] counters = items.get(itemId);
+        if (counters == null && snapshot != null && snapshot.indexOf(itemId) >= 0) {
+            counters = getCounters(itemId);
+        }
+        if (counters != null) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = counters[i].sum();
+            }
+        }
+        return new RatingSummary(itemId, stepsPerValue, counts);
+    }
+
+    /**
+     * @param itemId
+     * @return the average of the votes given for the item or zero if there
+     *         are no votes
+     */
+    public double getAverage(long itemId) {
+        return getSummary(itemId).getAverage();
+    }
+
+    /**
+     * @param itemId
+     * @return the number of votes given for the item
+     */
+    public long getCount(long itemId) {
+        return getSummary(itemId).getCount();
+    }
+
+    /**
+     * Restores the votes from the given snapshot. The votes of an item are
+     * read from the snapshot when the item is needed for the first time, so
+     * restoring doesn't depend on the number of items. Items already having
+     * votes in this aggregator are not restored, so the snapshot should be
+     * restored before any votes are given.
+     * <p>
+     * The snapshot stays mapped until the aggregator is garbage collected.
+     * Serializing the aggregator loads all items of the snapshot, since the
+     * snapshot itself is not serialized.
+     *
+     * @param snapshot
+     * @throws IllegalArgumentException
+     *             if the snapshot was written by an aggregator with a
+     *             different maximum value or steps per value
+     */
+    public void restore(RatingSnapshot snapshot) {
+        if (snapshot.getMaxValue() != maxValue || snapshot.getStepsPerValue() != stepsPerValue) {
+            throw new IllegalArgumentException("Snapshot of " + snapshot.getMaxValue() + " values in "
+                    + snapshot.getStepsPerValue() + " steps doesn't match the aggregator.");
+        }
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Restores the votes from the given snapshot and then applies the votes
+     * stored to the log after the snapshot was written, so the aggregator is
+     * up to date without replaying the whole log. Should be called before
+     * any votes are given.
+     *
+     * @param snapshot
+     * @param log
+     *            the log the store of the aggregator that wrote the snapshot
+     *            was writing to
+     * @throws IllegalArgumentException
+     *             if the snapshot doesn't match the aggregator, has no log
+     *             position or the log has been compacted past it
+     * @see #restore(RatingSnapshot)
+     */
+    public void restore(RatingSnapshot snapshot, MappedLogRatingStore log) {
+        if (snapshot.getLogPosition() < 0) {
+            throw new IllegalArgumentException("Snapshot has no log position, its aggregator had no log.");
+        }
+        restore(snapshot);
+        log.replay(snapshot.getLogPosition(), this::apply);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        RatingSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            // the snapshot is not serialized, so load the items not yet used
+            for (int i = 0; i < snapshot.getItemCount(); i++) {
+                getCounters(snapshot.getItemId(i));
+            }
+        }
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        itemChangeListeners = new CopyOnWriteArrayList<>();
+        itemDisplays = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Writes a snapshot of the votes of all items to the given file,
+     * including the items of a restored snapshot not yet loaded. The
+     * {@link RatingStore#getPosition() position} of the store is recorded
+     * before the votes are read, so the votes stored later can be replayed
+     * with {@link #restore(RatingSnapshot, MappedLogRatingStore)}. Votes given
+     * while writing may or may not be included, so write the snapshot while
+     * no votes are given, for example at shutdown, to not replay them twice.
+     *
+     * @param file
+     * @throws IOException
+     * @see RatingSnapshot#open(Path)
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        RatingStore store = this.store;
+        long logPosition = store != null ? store.getPosition() : -1;
+        RatingSnapshot snapshot = this.snapshot;
+        int snapshotItems = snapshot != null ? snapshot.getItemCount() : 0;
+        long[] itemIds = new long[items.size() + snapshotItems];
+        int count = 0;
+        for (Long itemId : items.keySet()) {
+            if (count == itemIds.length) {
+                itemIds = Arrays.copyOf(itemIds, Math.max(16, count * 2));
+            }
+            itemIds[count++] = itemId;
+        }
+        for (int i = 0; i < snapshotItems; i++) {
+            if (count == itemIds.length) {
+                itemIds = Arrays.copyOf(itemIds, Math.max(16, count * 2));
+            }
+            itemIds[count++] = snapshot.getItemId(i);
+        }
+        Arrays.sort(itemIds, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || itemIds[unique - 1] != itemIds[i]) {
+                itemIds[unique++] = itemIds[i];
+            }
+        }
+
+        long[] uniqueIds = Arrays.copyOf(itemIds, unique);
+        RatingSnapshot.write(file, maxValue, stepsPerValue, logPosition, uniqueIds, (itemId, counts) -> {
+            LongAdder[] counters = items.get(itemId);
+            int index = counters == null ? snapshot.indexOf(itemId) : -1;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = counters != null ? counters[i].sum() : snapshot.getCount(index, i);
+            }
+        });
+    }
+
+    /**
+     * Binds the given component to vote for the item. Each rating the user
+     * gives through the component is recorded, replacing the previous rating
+     * given through the same component. A rating
+     * {@link RatingStars.RollbackEvent rolled back} by a failing asynchronous
+     * listener is replaced with the previous rating again, which also
+     * notifies the {@link RatingBroadcaster broadcasters} of the aggregator.
+     * The binding refers to the aggregator by name, see
+     * {@link #forName(String)}.
+     *
+     * @param ratingStars
+     *            the component used for voting
+     * @param itemId
+     * @return a registration handle to remove the binding
+     */
+    public Registration bind(RatingStars ratingStars, long itemId) {
+        return ratingStars.addValueChangeListener(new VoteBinding(this, itemId));
+    }
+
+    /**
+     * Binds the given read-only component to display the average rating of
+     * the item. The value is updated when the component is attached and
+     * whenever the votes of the item change while it's attached, through
+     * {@link UI#access(Runnable)} on the voting thread. Use a
+     * {@link RatingBroadcaster} instead to coalesce the changes of busy items.
+     *
+     * @param display
+     *            the component displaying the average
+     * @param itemId
+     * @return a registration handle to remove the binding
+     */
+    public Registration bindAverage(RatingStars display, long itemId) {
+        display.setReadOnly(true);
+        return new AverageBinding(this, itemId, display).bind();
+    }
+
+    /**
+     * Binds the given component to display the distribution of the votes
+     * given for the item. The counts are updated when the component is
+     * attached and whenever the votes of the item change while it's
+     * attached, like with {@link #bindAverage(RatingStars, long)}.
+     *
+     * @param display
+     *            the component displaying the distribution, having the same
+     *            number of steps as this aggregator
+     * @param itemId
+     * @return a registration handle to remove the binding
+     */
+    public Registration bindDistribution(RatingDistribution display, long itemId) {
+        return new DistributionBinding(this, itemId, display).bind();
+    }
+
+    private static double toRating(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+}
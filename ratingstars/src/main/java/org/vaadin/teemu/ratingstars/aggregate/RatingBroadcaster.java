@@ -0,0 +1,437 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.vaadin.server.ClientConnector.AttachEvent;
+import com.vaadin.server.ClientConnector.AttachListener;
+import com.vaadin.server.ClientConnector.DetachEvent;
+import com.vaadin.server.ClientConnector.DetachListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+import org.vaadin.teemu.ratingstars.RatingDistribution;
+import org.vaadin.teemu.ratingstars.RatingStars;
+
+/**
+ * Pushes the changing averages of a {@link RatingAggregator} to read-only
+ * RatingStars components, and the changing distributions to
+ * {@link RatingDistribution} components, in all open UIs. The changes of each
+ * item are coalesced over a window, so a display is updated at most once per
+ * window regardless of the number of votes given. The updates of all displays
+ * in the same UI are delivered with a single {@link UI#access(Runnable)} per
+ * window, and displays whose bar would not visibly change are skipped.
+ * <p>
+ * The UIs need to have server push enabled for the updates to reach the
+ * browser without a client request. A broadcaster is usually shared by the
+ * whole application and should be {@link #close() closed} when the
+ * application is shut down. It refers to a registered component only while
+ * the component is attached, so the components of closed UIs can be garbage
+ * collected without removing their registrations.
+ * <p>
+ * The registered components refer to the broadcaster by the
+ * {@link RatingAggregator#getName() name} of its aggregator, so a session
+ * with registered components can be serialized without the broadcaster and
+ * the components of a deserialized session are updated by the broadcaster of
+ * the same aggregator in the JVM they were deserialized in. There should be
+ * one broadcaster per aggregator.
+ */
+public class RatingBroadcaster implements AutoCloseable {
+
+    /** Broadcasters of this JVM by the name of their aggregator. */
+    private static final ConcurrentMap<String, WeakReference<RatingBroadcaster>> INSTANCES = new ConcurrentHashMap<>();
+
+    private final RatingAggregator aggregator;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final ConcurrentMap<Long, Set<Display>> displays = new ConcurrentHashMap<>();
+    private final Set<Long> changedItems = ConcurrentHashMap.newKeySet();
+    private final Registration aggregatorRegistration;
+    private final ScheduledFuture<?> flushTask;
+
+    /**
+     * Adds itself to the broadcaster when the component is attached and
+     * removes itself when the component is detached.
+     */
+    private abstract static class Display implements AttachListener, DetachListener {
+        private static final long serialVersionUID = 1L;
+
+        private final String aggregatorName;
+        private final long itemId;
+        private final Component component;
+        private volatile boolean attached;
+        private transient volatile UI ui;
+        private transient RatingBroadcaster broadcaster;
+
+        private Display(RatingBroadcaster broadcaster, Component component, long itemId) {
+            this.aggregatorName = broadcaster.aggregator.getName();
+            this.broadcaster = broadcaster;
+            this.component = component;
+            this.itemId = itemId;
+        }
+
+        /**
+         * @return the broadcaster or <code>null</code> if the display was
+         *         deserialized in a JVM without a broadcaster of the same
+         *         aggregator
+         */
+        private RatingBroadcaster broadcaster() {
+            RatingBroadcaster broadcaster = this.broadcaster;
+            if (broadcaster == null) {
+                broadcaster = forAggregator(aggregatorName);
+                this.broadcaster = broadcaster;
+            }
+            return broadcaster;
+        }
+
+        Registration register() {
+            RatingBroadcaster broadcaster = broadcaster();
+            broadcaster.update(this);
+            Registration attach = component.addAttachListener(this);
+            Registration detach = component.addDetachListener(this);
+            if (component.isAttached()) {
+                ui = component.getUI();
+                attached = true;
+                broadcaster.add(this);
+            }
+            return () -> {
+                attach.remove();
+                detach.remove();
+                remove();
+            };
+        }
+
+        @Override
+        public void attach(AttachEvent event) {
+            RatingBroadcaster broadcaster = broadcaster();
+            if (broadcaster != null) {
+                ui = component.getUI();
+                attached = true;
+                broadcaster.update(this);
+                broadcaster.add(this);
+            }
+        }
+
+        @Override
+        public void detach(DetachEvent event) {
+            remove();
+        }
+
+        private void remove() {
+            attached = false;
+            ui = null;
+            RatingBroadcaster broadcaster = broadcaster();
+            if (broadcaster != null) {
+                broadcaster.remove(this);
+            }
+        }
+
+        /**
+         * @return the UI of the attached component or <code>null</code>
+         */
+        private UI getUI() {
+            UI ui = this.ui;
+            if (ui == null && attached) {
+                // deserialized while attached
+                ui = component.getUI();
+                this.ui = ui;
+            }
+            return ui;
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            RatingBroadcaster broadcaster = attached ? broadcaster() : null;
+            if (broadcaster != null) {
+                broadcaster.add(this);
+            }
+        }
+
+        /**
+         * Updates the component right away, called with the session locked.
+         */
+        abstract void update(RatingSummary summary);
+
+        /**
+         * Returns the update of the component for the changed summary or
+         * <code>null</code> if the component would not visibly change.
+         */
+        abstract Runnable changed(RatingSummary summary);
+    }
+
+    private static class AverageDisplay extends Display {
+        private static final long serialVersionUID = 1L;
+
+        private final RatingStars component;
+        private volatile int maxValue;
+        private volatile int barWidth = -1;
+
+        private AverageDisplay(RatingBroadcaster broadcaster, RatingStars component, long itemId) {
+            super(broadcaster, component, itemId);
+            this.component = component;
+        }
+
+        @Override
+        void update(RatingSummary summary) {
+            maxValue = component.getMaxValue();
+            barWidth = toBarWidth(summary.getAverage(), maxValue);
+            component.setValue(summary.getAverage());
+        }
+
+        @Override
+        Runnable changed(RatingSummary summary) {
+            double average = summary.getAverage();
+            int newBarWidth = toBarWidth(average, maxValue);
+            if (newBarWidth == barWidth) {
+                return null;
+            }
+            barWidth = newBarWidth;
+            return () -> component.setValue(average);
+        }
+    }
+
+    private static class DistributionDisplay extends Display {
+        private static final long serialVersionUID = 1L;
+
+        private final RatingDistribution component;
+        private volatile int[] percentages;
+
+        private DistributionDisplay(RatingBroadcaster broadcaster, RatingDistribution component, long itemId) {
+            super(broadcaster, component, itemId);
+            this.component = component;
+        }
+
+        @Override
+        void update(RatingSummary summary) {
+            percentages = toPercentages(summary);
+            component.setCounts(summary.getCounts());
+        }
+
+        @Override
+        Runnable changed(RatingSummary summary) {
+            int[] newPercentages = toPercentages(summary);
+            if (Arrays.equals(newPercentages, percentages)) {
+                return null;
+            }
+            percentages = newPercentages;
+            return () -> component.setCounts(summary.getCounts());
+        }
+    }
+
+    /**
+     * Constructs a new broadcaster for the given aggregator using a scheduler
+     * thread of its own.
+     *
+     * @param aggregator
+     * @param window
+     *            length of the window over which changes are coalesced
+     * @param unit
+     *            time unit of the window
+     */
+    public RatingBroadcaster(RatingAggregator aggregator, long window, TimeUnit unit) {
+        this(aggregator, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratingstars-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        }), true, window, unit);
+    }
+
+    /**
+     * Constructs a new broadcaster for the given aggregator using the given
+     * scheduler. The scheduler is not shut down when the broadcaster is
+     * closed.
+     *
+     * @param aggregator
+     * @param scheduler
+     *            scheduler used for delivering the coalesced changes
+     * @param window
+     *            length of the window over which changes are coalesced
+     * @param unit
+     *            time unit of the window
+     */
+    public RatingBroadcaster(RatingAggregator aggregator, ScheduledExecutorService scheduler, long window,
+            TimeUnit unit) {
+        this(aggregator, scheduler, false, window, unit);
+    }
+
+    private RatingBroadcaster(RatingAggregator aggregator, ScheduledExecutorService scheduler,
+            boolean ownScheduler, long window, TimeUnit unit) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Given window (" + window + ") must be greater than zero.");
+        }
+        this.aggregator = aggregator;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        aggregatorRegistration = aggregator.addItemChangeListener(this::itemChanged);
+        flushTask = scheduler.scheduleWithFixedDelay(this::flush, window, window, unit);
+        INSTANCES.values().removeIf(reference -> reference.get() == null);
+        INSTANCES.put(aggregator.getName(), new WeakReference<>(this));
+    }
+
+    /**
+     * Returns the open broadcaster of the aggregator with the given name in
+     * this JVM.
+     *
+     * @param aggregatorName
+     * @return the broadcaster or <code>null</code> if there is none
+     * @see RatingAggregator#getName()
+     */
+    public static RatingBroadcaster forAggregator(String aggregatorName) {
+        WeakReference<RatingBroadcaster> reference = INSTANCES.get(aggregatorName);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Registers the given component to display the average rating of the
+     * item. The component is made read-only and its value is updated right
+     * away and whenever it is attached.
+     *
+     * @param component
+     *            the component displaying the average
+     * @param itemId
+     * @return a registration handle to remove the component
+     */
+    public Registration register(RatingStars component, long itemId) {
+        component.setReadOnly(true);
+        return new AverageDisplay(this, component, itemId).register();
+    }
+
+    /**
+     * Registers the given component to display the distribution of the votes
+     * given for the item. The counts are updated right away and whenever the
+     * component is attached. Changes that don't change the rounded
+     * percentage of any row are not delivered.
+     *
+     * @param component
+     *            the component displaying the distribution, having the same
+     *            number of steps as the aggregator
+     * @param itemId
+     * @return a registration handle to remove the component
+     */
+    public Registration register(RatingDistribution component, long itemId) {
+        return new DistributionDisplay(this, component, itemId).register();
+    }
+
+    /**
+     * Adds the display to {@link #displays}, which holds it only while the
+     * component is attached, so the components of closed UIs are not held by
+     * the broadcaster.
+     */
+    private void add(Display display) {
+        displays.compute(display.itemId, (id, set) -> {
+            Set<Display> itemDisplays = set != null ? set : ConcurrentHashMap.<Display> newKeySet();
+            itemDisplays.add(display);
+            return itemDisplays;
+        });
+    }
+
+    private void remove(Display display) {
+        displays.computeIfPresent(display.itemId, (id, set) -> {
+            set.remove(display);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * @return number of components currently receiving the changes, that is
+     *         the registered components that are attached
+     */
+    int getDisplayCount() {
+        int count = 0;
+        for (Set<Display> itemDisplays : displays.values()) {
+            count += itemDisplays.size();
+        }
+        return count;
+    }
+
+    private void itemChanged(long itemId) {
+        if (displays.containsKey(itemId)) {
+            changedItems.add(itemId);
+        }
+    }
+
+    private void flush() {
+        Map<UI, List<Runnable>> updates = new IdentityHashMap<>();
+        for (Long itemId : changedItems) {
+            changedItems.remove(itemId);
+            Set<Display> itemDisplays = displays.get(itemId);
+            if (itemDisplays == null) {
+                continue;
+            }
+            RatingSummary summary = aggregator.getSummary(itemId);
+            for (Display display : itemDisplays) {
+                UI ui = display.getUI();
+                if (ui == null) {
+                    continue;
+                }
+                Runnable update = display.changed(summary);
+                if (update != null) {
+                    updates.computeIfAbsent(ui, key -> new ArrayList<>()).add(update);
+                }
+            }
+        }
+        for (Map.Entry<UI, List<Runnable>> entry : updates.entrySet()) {
+            List<Runnable> uiUpdates = entry.getValue();
+            try {
+                entry.getKey().access(() -> uiUpdates.forEach(Runnable::run));
+            } catch (UIDetachedException e) {
+                // UI was closed after the displays were collected
+            }
+        }
+    }
+
+    private void update(Display display) {
+        display.update(aggregator.getSummary(display.itemId));
+    }
+
+    /**
+     * Returns the width of the bar in percents, the resolution in which the
+     * client-side widget displays the value.
+     */
+    private static int toBarWidth(double value, int maxValue) {
+        return (int) (value * 100 / maxValue);
+    }
+
+    /**
+     * Returns the shares of the votes by step rounded to whole percents, the
+     * resolution in which {@link RatingDistribution} displays them.
+     */
+    private static int[] toPercentages(RatingSummary summary) {
+        int[] percentages = new int[summary.getStepCount()];
+        long total = summary.getCount();
+        for (int i = 0; i < percentages.length; i++) {
+            percentages[i] = total > 0 ? (int) Math.round(summary.getCount(i + 1) * 100.0 / total) : 0;
+        }
+        return percentages;
+    }
+
+    /**
+     * Stops delivering the changes and releases the scheduler if it was
+     * created by this broadcaster.
+     */
+    @Override
+    public void close() {
+        INSTANCES.computeIfPresent(aggregator.getName(),
+                (name, reference) -> reference.get() == this ? null : reference);
+        aggregatorRegistration.remove();
+        flushTask.cancel(false);
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only snapshot of the vote counts of a {@link RatingAggregator}
+ * stored in a file that is mapped to memory. Opening a snapshot doesn't read
+ * the counts, they are read by an aggregator
+ * {@link RatingAggregator#restore(RatingSnapshot) restored} from the snapshot
+ * when an item is needed for the first time. The time to start up is thus
+ * independent of the number of items and votes.
+ * <p>
+ * The file starts with a header of a magic number, a format version, the
+ * maximum value, the steps per value, the number of items and the
+ * {@link #getLogPosition() position} of the vote log. It is followed
+ * by fixed size records sorted by the item id, each having the item id and
+ * the vote count of every rating step, so an item is found with a binary
+ * search.
+ *
+ * @see RatingAggregator#writeSnapshot(Path)
+ */
+public final class RatingSnapshot {
+
+    private static final int MAGIC = 0x52535353; // "RSSS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int maxValue;
+    private final int stepsPerValue;
+    private final int itemCount;
+    private final long logPosition;
+    private final int recordSize;
+
+    private RatingSnapshot(MappedByteBuffer buffer, Path file) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a rating snapshot.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of rating snapshot " + file + ".");
+        }
+        this.buffer = buffer;
+        maxValue = buffer.getInt(8);
+        stepsPerValue = buffer.getInt(12);
+        itemCount = (int) buffer.getLong(16);
+        logPosition = buffer.getLong(24);
+        recordSize = recordSize(maxValue * stepsPerValue);
+        if (buffer.capacity() < HEADER_SIZE + (long) itemCount * recordSize) {
+            throw new IOException("Rating snapshot " + file + " is truncated.");
+        }
+    }
+
+    /**
+     * Opens the snapshot in the given file.
+     *
+     * @param file
+     * @return the snapshot
+     * @throws IOException
+     *             if the file cannot be read or is not a rating snapshot
+     */
+    public static RatingSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new RatingSnapshot(channel.map(MapMode.READ_ONLY, 0, channel.size()), file);
+        }
+    }
+
+    /**
+     * @return the maximum rating value of the aggregator written to the
+     *         snapshot
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @return number of rating steps per whole value of the aggregator
+     *         written to the snapshot
+     */
+    public int getStepsPerValue() {
+        return stepsPerValue;
+    }
+
+    /**
+     * @return number of items in the snapshot
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the position the store of the aggregator had when the snapshot
+     * was written. The votes stored from that position on are not included
+     * in the snapshot and can be replayed from a
+     * {@link org.vaadin.teemu.ratingstars.store.MappedLogRatingStore
+     * MappedLogRatingStore}.
+     *
+     * @return the position or <code>-1</code> if the aggregator had no store
+     *         supporting positions
+     * @see RatingAggregator#restore(RatingSnapshot,
+     *      org.vaadin.teemu.ratingstars.store.MappedLogRatingStore)
+     */
+    public long getLogPosition() {
+        return logPosition;
+    }
+
+    long getItemId(int index) {
+        return buffer.getLong(HEADER_SIZE + index * recordSize);
+    }
+
+    /**
+     * Returns the index of the given item using a binary search.
+     *
+     * @return the index or <code>-1</code> if the item is not in the snapshot
+     */
+    int indexOf(long itemId) {
+        int low = 0;
+        int high = itemCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = getItemId(middle);
+            if (middleId < itemId) {
+                low = middle + 1;
+            } else if (middleId > itemId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    long getCount(int index, int step) {
+        return buffer.getLong(HEADER_SIZE + index * recordSize + 8 + step * 8);
+    }
+
+    private static int recordSize(int stepCount) {
+        return 8 + stepCount * 8;
+    }
+
+    /**
+     * Writes a snapshot of the items with the given ids, which must be in
+     * ascending order. The snapshot is first written to a temporary file that
+     * then replaces the given file.
+     */
+    static void write(Path file, int maxValue, int stepsPerValue, long logPosition, long[] itemIds,
+            CountSource counts) throws IOException {
+        int stepCount = maxValue * stepsPerValue;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(maxValue).putInt(stepsPerValue).putLong(itemIds.length)
+                    .putLong(logPosition);
+            // called through Buffer to link against the Java 8 API, where
+            // ByteBuffer doesn't override flip() and clear()
+            ((Buffer) header).flip();
+            writeFully(channel, header);
+
+            int recordSize = recordSize(stepCount);
+            ByteBuffer records = ByteBuffer.allocateDirect(Math.max(1, 65536 / recordSize) * recordSize);
+            long[] itemCounts = new long[stepCount];
+            for (long itemId : itemIds) {
+                if (records.remaining() < recordSize) {
+                    ((Buffer) records).flip();
+                    writeFully(channel, records);
+                    ((Buffer) records).clear();
+                }
+                counts.getCounts(itemId, itemCounts);
+                records.putLong(itemId);
+                for (long count : itemCounts) {
+                    records.putLong(count);
+                }
+            }
+            ((Buffer) records).flip();
+            writeFully(channel, records);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Source of the vote counts written to a snapshot.
+     */
+    @FunctionalInterface
+    interface CountSource {
+
+        /**
+         * Copies the vote count of every step of the item to the given array.
+         */
+        void getCounts(long itemId, long[] counts);
+    }
+
+}
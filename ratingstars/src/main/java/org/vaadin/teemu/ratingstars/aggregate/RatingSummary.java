@@ -0,0 +1,94 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import java.io.Serializable;
+
+/**
+ * An immutable summary of the votes given for a single item: the number of
+ * votes, their average and the distribution of the votes over the rating
+ * steps.
+ *
+ * @see RatingAggregator#getSummary(long)
+ */
+public final class RatingSummary implements Serializable {
+    private static final long serialVersionUID = 5034412712466001227L;
+
+    private final long itemId;
+    private final int stepsPerValue;
+    private final long[] counts;
+    private final long count;
+    private final double average;
+
+    RatingSummary(long itemId, int stepsPerValue, long[] counts) {
+        this.itemId = itemId;
+        this.stepsPerValue = stepsPerValue;
+        this.counts = counts;
+
+        long count = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            sum += counts[i] * (double) (i + 1) / stepsPerValue;
+        }
+        this.count = count;
+        this.average = count > 0 ? sum / count : 0.0;
+    }
+
+    /**
+     * @return id of the summarized item
+     */
+    public long getItemId() {
+        return itemId;
+    }
+
+    /**
+     * @return total number of votes
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return average of the votes or zero if there are no votes
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    /**
+     * @return number of rating steps, that is the maximum value multiplied by
+     *         the steps per value
+     */
+    public int getStepCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the number of votes for the given step. Step <code>1</code> is
+     * the smallest possible rating and {@link #getStepCount()} the largest.
+     *
+     * @param step
+     * @return number of votes for the step
+     */
+    public long getCount(int step) {
+        return counts[step - 1];
+    }
+
+    /**
+     * Returns the rating value of the given step.
+     *
+     * @param step
+     * @return the rating value
+     */
+    public double getValue(int step) {
+        return (double) step / stepsPerValue;
+    }
+
+    /**
+     * @return a copy of the vote counts by step, index zero holding the count
+     *         of step <code>1</code>
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+}
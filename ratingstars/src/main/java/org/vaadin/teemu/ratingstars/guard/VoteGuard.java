@@ -0,0 +1,393 @@
+package org.vaadin.teemu.ratingstars.guard;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.vaadin.server.SerializableSupplier;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
+import org.vaadin.teemu.ratingstars.RatingStars;
+
+/**
+ * Thread-safe guard rejecting repeated and flooding votes before they reach
+ * the value change listeners of RatingStars components. A vote is rejected
+ * if the voter has already given the same rating for the item within the
+ * duplicate time-to-live, or if the voter has given too many votes for the
+ * item or in total within the rate limit window.
+ * <p>
+ * The memory used by the guard is fixed and doesn't depend on the number of
+ * voters. The votes of the window are counted by count-min sketches, which
+ * may overestimate but never underestimate a count, and the last votes are
+ * kept in a bounded least recently used cache. The cache is split into
+ * stripes by the voter, and the votes of a voter are checked and counted
+ * while holding the lock of its stripe, so concurrent votes of the same
+ * voter can't exceed the limits while the votes of different voters rarely
+ * contend. The voter ids are hashed to 64 bits, so distinct voters are
+ * practically never mistaken for each other.
+ * <p>
+ * A guard is usually shared by the whole application. The guarded
+ * components refer to the guard by its {@link #getName() name}, so they can
+ * be serialized without the guard, and the components of a deserialized
+ * session are guarded by the guard constructed with the same name in the JVM
+ * they were deserialized in. A deserialized component rejects the votes with
+ * an exception if there is no such guard, instead of accepting them
+ * unguarded.
+ *
+ * @see RatingStars#setVoteFilter(RatingStars.VoteFilter)
+ */
+public class VoteGuard {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 16;
+    private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L };
+    private static final int MAX_STRIPES = 64;
+
+    /** Guards of this JVM by name, referred to by the guarded components. */
+    private static final ConcurrentMap<String, WeakReference<VoteGuard>> INSTANCES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxVotesPerItem;
+    private final int maxVotesPerVoter;
+    private final long windowNanos;
+    private final long duplicateTtlNanos;
+    private final LastVotes[] lastVotes;
+
+    private volatile AtomicIntegerArray currentWindow = new AtomicIntegerArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    private volatile AtomicIntegerArray previousWindow = new AtomicIntegerArray(SKETCH_DEPTH * SKETCH_WIDTH);
+    private volatile long windowStart = System.nanoTime();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    private static class LastVote {
+        private final double rating;
+        private final long time;
+
+        private LastVote(double rating, long time) {
+            this.rating = rating;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Least recently used cache of the last votes of the voters of a stripe.
+     */
+    private static class LastVotes extends LinkedHashMap<Long, LastVote> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private LastVotes(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, LastVote> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Checks the votes given through a component, referring to the guard by
+     * name.
+     */
+    private static class GuardFilter implements RatingStars.VoteFilter {
+        private static final long serialVersionUID = 1L;
+
+        private final String guardName;
+        private final long itemId;
+        private final SerializableSupplier<String> voterId;
+        private transient VoteGuard guard;
+
+        private GuardFilter(VoteGuard guard, long itemId, SerializableSupplier<String> voterId) {
+            this.guardName = guard.name;
+            this.itemId = itemId;
+            this.voterId = voterId;
+            this.guard = guard;
+        }
+
+        @Override
+        public boolean accept(double newValue) {
+            VoteGuard guard = this.guard;
+            if (guard == null) {
+                guard = forName(guardName);
+                if (guard == null) {
+                    throw new IllegalStateException("No vote guard named " + guardName + " exists.");
+                }
+                this.guard = guard;
+            }
+            return guard.accept(voterId.get(), itemId, newValue);
+        }
+    }
+
+    /**
+     * Constructs a new guard with a generated name.
+     *
+     * @param maxVotesPerItem
+     *            number of votes a voter may give for a single item within the
+     *            window
+     * @param maxVotesPerVoter
+     *            number of votes a voter may give in total within the window
+     * @param window
+     *            length of the rate limit window
+     * @param duplicateTtl
+     *            time within which the same rating for the same item is
+     *            rejected as a duplicate
+     * @param unit
+     *            time unit of the window and the duplicate time-to-live
+     * @param maxTrackedVotes
+     *            number of last votes kept for detecting duplicates
+     */
+    public VoteGuard(int maxVotesPerItem, int maxVotesPerVoter, long window, long duplicateTtl, TimeUnit unit,
+            int maxTrackedVotes) {
+        this(UUID.randomUUID().toString(), maxVotesPerItem, maxVotesPerVoter, window, duplicateTtl, unit,
+                maxTrackedVotes);
+    }
+
+    /**
+     * Constructs a new guard with the given name. The name identifies the
+     * guard to the components guarded by it in a replicated session, so it
+     * should be the same in all JVMs of the application. A guard constructed
+     * later with the same name replaces this one.
+     *
+     * @param name
+     *            name of the guard
+     * @param maxVotesPerItem
+     *            number of votes a voter may give for a single item within the
+     *            window
+     * @param maxVotesPerVoter
+     *            number of votes a voter may give in total within the window
+     * @param window
+     *            length of the rate limit window
+     * @param duplicateTtl
+     *            time within which the same rating for the same item is
+     *            rejected as a duplicate
+     * @param unit
+     *            time unit of the window and the duplicate time-to-live
+     * @param maxTrackedVotes
+     *            number of last votes kept for detecting duplicates
+     * @see #forName(String)
+     */
+    public VoteGuard(String name, int maxVotesPerItem, int maxVotesPerVoter, long window, long duplicateTtl,
+            TimeUnit unit, int maxTrackedVotes) {
+        if (name == null) {
+            throw new IllegalArgumentException("Given name must not be null.");
+        }
+        if (maxVotesPerItem <= 0 || maxVotesPerVoter <= 0) {
+            throw new IllegalArgumentException("Given vote limits must be greater than zero.");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Given window (" + window + ") must be greater than zero.");
+        }
+        if (maxTrackedVotes <= 0) {
+            throw new IllegalArgumentException(
+                    "Given number of tracked votes (" + maxTrackedVotes + ") must be greater than zero.");
+        }
+        this.name = name;
+        this.maxVotesPerItem = maxVotesPerItem;
+        this.maxVotesPerVoter = maxVotesPerVoter;
+        this.windowNanos = unit.toNanos(window);
+        this.duplicateTtlNanos = unit.toNanos(duplicateTtl);
+        lastVotes = new LastVotes[Math.min(MAX_STRIPES, Integer.highestOneBit(maxTrackedVotes))];
+        int stripeCapacity = (maxTrackedVotes + lastVotes.length - 1) / lastVotes.length;
+        for (int i = 0; i < lastVotes.length; i++) {
+            lastVotes[i] = new LastVotes(stripeCapacity);
+        }
+        INSTANCES.values().removeIf(reference -> reference.get() == null);
+        INSTANCES.put(name, new WeakReference<>(this));
+    }
+
+    /**
+     * Returns the guard constructed with the given name in this JVM.
+     *
+     * @param name
+     * @return the guard or <code>null</code> if there is none
+     */
+    public static VoteGuard forName(String name) {
+        WeakReference<VoteGuard> reference = INSTANCES.get(name);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * @return the name of this guard, generated if it was not given
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Guards the given component, identifying the voters by their HTTP
+     * session.
+     *
+     * @param ratingStars
+     *            the component used for voting
+     * @param itemId
+     *            the item voted with the component
+     */
+    public void bind(RatingStars ratingStars, long itemId) {
+        bind(ratingStars, itemId, VoteGuard::getSessionId);
+    }
+
+    /**
+     * Guards the given component, identifying the voters by the given
+     * supplier called on each vote.
+     *
+     * @param ratingStars
+     *            the component used for voting
+     * @param itemId
+     *            the item voted with the component
+     * @param voterId
+     *            supplier of the id of the current voter, serialized with the
+     *            component
+     */
+    public void bind(RatingStars ratingStars, long itemId, SerializableSupplier<String> voterId) {
+        ratingStars.setVoteFilter(new GuardFilter(this, itemId, voterId));
+    }
+
+    private static String getSessionId() {
+        VaadinSession session = VaadinSession.getCurrent();
+        WrappedSession wrappedSession = session != null ? session.getSession() : null;
+        return wrappedSession != null ? wrappedSession.getId() : "";
+    }
+
+    /**
+     * Checks the vote and records it if it's accepted. The check and the
+     * recording are atomic for the votes of the same voter.
+     *
+     * @param voterId
+     *            id of the voter
+     * @param itemId
+     * @param rating
+     * @return <code>true</code> if the vote is accepted
+     */
+    public boolean accept(String voterId, long itemId, double rating) {
+        long now = System.nanoTime();
+        long voterKey = hash(voterId);
+        long voteKey = mix(voterKey ^ mix(itemId));
+
+        rotateWindow(now);
+        LastVotes stripe = lastVotes[(int) voterKey & (lastVotes.length - 1)];
+        synchronized (stripe) {
+            LastVote last = stripe.get(voteKey);
+            if (last != null && last.rating == rating && now - last.time < duplicateTtlNanos) {
+                duplicates.increment();
+                return false;
+            }
+            double elapsed = (double) (now - windowStart) / windowNanos;
+            if (estimate(voteKey, elapsed) >= maxVotesPerItem || estimate(voterKey, elapsed) >= maxVotesPerVoter) {
+                rateLimited.increment();
+                return false;
+            }
+            increment(voteKey);
+            increment(voterKey);
+            stripe.put(voteKey, new LastVote(rating, now));
+        }
+        accepted.increment();
+        return true;
+    }
+
+    private void rotateWindow(long now) {
+        if (now - windowStart >= windowNanos) {
+            synchronized (this) {
+                long start = windowStart;
+                if (now - start >= windowNanos) {
+                    AtomicIntegerArray expired = previousWindow;
+                    if (now - start >= 2 * windowNanos) {
+                        // no votes in the previous window either
+                        previousWindow = new AtomicIntegerArray(expired.length());
+                    } else {
+                        previousWindow = currentWindow;
+                    }
+                    currentWindow = new AtomicIntegerArray(expired.length());
+                    windowStart = now - (now - start) % windowNanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the votes of the sliding window by weighting the count of the
+     * previous window by its part still inside the sliding window.
+     */
+    private double estimate(long key, double elapsed) {
+        double previousWeight = Math.max(0.0, 1.0 - elapsed);
+        return count(currentWindow, key) + previousWeight * count(previousWindow, key);
+    }
+
+    private static int count(AtomicIntegerArray sketch, long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            min = Math.min(min, sketch.get(index(row, key)));
+        }
+        return min;
+    }
+
+    private void increment(long key) {
+        AtomicIntegerArray sketch = currentWindow;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            sketch.incrementAndGet(index(row, key));
+        }
+    }
+
+    private static int index(int row, long key) {
+        return row * SKETCH_WIDTH + (int) (mix(key ^ SEEDS[row]) & (SKETCH_WIDTH - 1));
+    }
+
+    /**
+     * Hashes all characters of the string to 64 bits with FNV-1a, unlike
+     * {@link String#hashCode()} whose 32 bits collide for short strings like
+     * <code>"Aa"</code> and <code>"BB"</code>.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * @return number of accepted votes
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return number of votes rejected as duplicates
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return number of votes rejected by the rate limits
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * @return total number of rejected votes
+     */
+    public long getRejectedCount() {
+        return getDuplicateCount() + getRateLimitedCount();
+    }
+
+}
@@ -0,0 +1,34 @@
+package org.vaadin.teemu.ratingstars.gwt;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.vaadin.server.widgetsetutils.ConnectorBundleLoaderFactory;
+import com.vaadin.shared.ui.Connect.LoadStyle;
+
+/**
+ * Connector bundle generator loading the RatingStars component and renderer,
+ * MultiRatingStars and RatingDistribution connectors lazily, that is only
+ * when the first of them is needed. Used by the
+ * <code>RatingStarsLazyLoading</code> module. The caption registry stays in
+ * the eager bundle, as it's small and attached to the UI.
+ */
+public class RatingStarsLazyBundleLoaderFactory extends ConnectorBundleLoaderFactory {
+
+    private static final Set<String> LAZY_CONNECTORS = new HashSet<>(
+            Arrays.asList("org.vaadin.teemu.ratingstars.gwt.client.RatingStarsConnector",
+                    "org.vaadin.teemu.ratingstars.gwt.client.RatingStarsRendererConnector",
+                    "org.vaadin.teemu.ratingstars.gwt.client.MultiRatingStarsConnector",
+                    "org.vaadin.teemu.ratingstars.gwt.client.RatingDistributionConnector"));
+
+    @Override
+    protected LoadStyle getLoadStyle(JClassType connectorType) {
+        if (LAZY_CONNECTORS.contains(connectorType.getQualifiedSourceName())) {
+            return LoadStyle.LAZY;
+        }
+        return super.getLoadStyle(connectorType);
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+/**
+ * Defines when a value given by the user is sent to the server.
+ */
+public enum CommitPolicy {
+
+    /** The value is sent right away. */
+    IMMEDIATE,
+
+    /**
+     * The value is sent after no new values have been given for the commit
+     * delay. Only the last value is sent.
+     */
+    DEBOUNCED,
+
+    /** The last value is sent when the component loses focus. */
+    ON_BLUR
+
+}
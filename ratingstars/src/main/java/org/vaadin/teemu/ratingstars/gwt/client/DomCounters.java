@@ -0,0 +1,78 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+/**
+ * Counter of the reads forcing the layout to be calculated made by the
+ * RatingStars widgets, for measuring the client-side cost of interactions in
+ * a headless browser. Unlike DOM mutations, which a test can observe with a
+ * <code>MutationObserver</code>, layout reads can't be observed by scripts,
+ * so the widgets report them where they are made and reads made elsewhere
+ * are not counted. The counter is compiled in only when the
+ * <code>ratingstars.domCounters</code> configuration property is set to
+ * <code>true</code> in the widgetset module, otherwise the calls are removed
+ * by the compiler:
+ * 
+ * <pre>
+ * &lt;set-configuration-property name="ratingstars.domCounters" value="true" /&gt;
+ * </pre>
+ * 
+ * When compiled in, the counter is available to scripts as
+ * <code>window.ratingstarsDomCounters</code> with the functions
+ * <code>layoutReads()</code> and <code>reset()</code>, so a test driver can
+ * run an interaction sequence and compare the count to the expected one. GWT
+ * tests in this package can use the static methods instead.
+ */
+final class DomCounters {
+
+    static final boolean ENABLED = "true".equals(System
+            .getProperty("ratingstars.domCounters"));
+
+    private static int layoutReads;
+    private static boolean exported;
+
+    private DomCounters() {
+    }
+
+    /**
+     * Counts the given number of reads forcing the layout to be calculated.
+     */
+    static void layoutReads(int count) {
+        if (ENABLED) {
+            export();
+            layoutReads += count;
+        }
+    }
+
+    /**
+     * @return number of layout reads counted since the last reset
+     */
+    static int getLayoutReads() {
+        return layoutReads;
+    }
+
+    /**
+     * Resets the counter to zero.
+     */
+    static void reset() {
+        layoutReads = 0;
+    }
+
+    private static void export() {
+        if (!exported) {
+            exported = true;
+            exportCounters();
+        }
+    }
+
+    private static native void exportCounters()
+    /*-{
+        $wnd.ratingstarsDomCounters = {
+            layoutReads: $entry(function() {
+                return @org.vaadin.teemu.ratingstars.gwt.client.DomCounters::layoutReads;
+            }),
+            reset: $entry(function() {
+                @org.vaadin.teemu.ratingstars.gwt.client.DomCounters::layoutReads = 0;
+            })
+        };
+    }-*/;
+
+}
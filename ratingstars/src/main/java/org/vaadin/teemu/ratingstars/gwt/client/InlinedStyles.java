@@ -0,0 +1,82 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.dom.client.StyleInjector;
+import com.google.gwt.resources.client.ClientBundle;
+import com.google.gwt.resources.client.DataResource;
+import com.google.gwt.resources.client.DataResource.MimeType;
+import com.google.gwt.resources.client.TextResource;
+
+/**
+ * The RatingStars styles compiled into the widgetset with the star images
+ * inlined as data URIs, so no separate requests are made for the stylesheet
+ * or the images. Used instead of the linked <code>styles.css</code> when the
+ * widgetset inherits <code>RatingStarsInlinedWidgetset</code>, which sets the
+ * <code>ratingstars.inlineStyles</code> configuration property. Otherwise the
+ * resources are removed by the compiler.
+ * <p>
+ * The styles are injected when the first widget or renderer is created, so
+ * with <code>RatingStarsLazyLoading</code> they are loaded together with the
+ * connectors.
+ */
+final class InlinedStyles {
+
+    static final boolean ENABLED = "true".equals(System
+            .getProperty("ratingstars.inlineStyles"));
+
+    private static final String PUBLIC = "org/vaadin/teemu/ratingstars/gwt/public/ratingstars/";
+
+    private static boolean injected;
+
+    interface Resources extends ClientBundle {
+
+        @Source(PUBLIC + "styles.css")
+        TextResource styles();
+
+        @Source(PUBLIC + "images/star_19x18.png")
+        @MimeType("image/png")
+        DataResource star();
+
+        @Source(PUBLIC + "images/star_bg_19x18.gif")
+        @MimeType("image/gif")
+        DataResource starBackground();
+
+        @Source(PUBLIC + "images/star_12x11.png")
+        @MimeType("image/png")
+        DataResource tinyStar();
+
+        @Source(PUBLIC + "images/star_bg_12x11.gif")
+        @MimeType("image/gif")
+        DataResource tinyStarBackground();
+
+        @Source(PUBLIC + "images/arrow_head_9x5.png")
+        @MimeType("image/png")
+        DataResource arrowHead();
+    }
+
+    private InlinedStyles() {
+    }
+
+    /**
+     * Injects the styles unless already injected or not enabled.
+     */
+    static void ensureInjected() {
+        if (ENABLED && !injected) {
+            injected = true;
+            Resources resources = GWT.create(Resources.class);
+            String css = resources.styles().getText()
+                    .replace("images/star_19x18.png",
+                            resources.star().getSafeUri().asString())
+                    .replace("images/star_bg_19x18.gif",
+                            resources.starBackground().getSafeUri().asString())
+                    .replace("images/star_12x11.png",
+                            resources.tinyStar().getSafeUri().asString())
+                    .replace("images/star_bg_12x11.gif",
+                            resources.tinyStarBackground().getSafeUri()
+                                    .asString())
+                    .replace("images/arrow_head_9x5.png",
+                            resources.arrowHead().getSafeUri().asString());
+            StyleInjector.inject(css);
+        }
+    }
+}
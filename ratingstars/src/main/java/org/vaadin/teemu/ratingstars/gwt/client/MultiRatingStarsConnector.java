@@ -0,0 +1,93 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.Map;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.ui.AbstractFieldConnector;
+import com.vaadin.shared.ui.Connect;
+import org.vaadin.teemu.ratingstars.MultiRatingStars;
+import org.vaadin.teemu.ratingstars.gwt.client.MultiRatingStarsWidget.CriterionValueHandler;
+
+@Connect(MultiRatingStars.class)
+public class MultiRatingStarsConnector extends AbstractFieldConnector {
+
+    private static final long serialVersionUID = 3581764091231734065L;
+
+    private MultiRatingStarsServerRpc rpc = RpcProxy.create(
+            MultiRatingStarsServerRpc.class, this);
+
+    @Override
+    protected void init() {
+        super.init();
+        getWidget().setCriterionValueHandler(new CriterionValueHandler() {
+            @Override
+            public void onValueChange(int criterion, double value) {
+                rpc.valueChanged(criterion, value);
+            }
+        });
+    }
+
+    @Override
+    protected Widget createWidget() {
+        return GWT.create(MultiRatingStarsWidget.class);
+    }
+
+    @Override
+    public MultiRatingStarsWidget getWidget() {
+        return (MultiRatingStarsWidget) super.getWidget();
+    }
+
+    @Override
+    public MultiRatingStarsState getState() {
+        return (MultiRatingStarsState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        MultiRatingStarsWidget widget = getWidget();
+        widget.setReadOnly(getState().readOnly);
+        if (stateChangeEvent.hasPropertyChanged("maxValue")) {
+            widget.setMaxValue(getState().maxValue);
+        }
+        if (stateChangeEvent.hasPropertyChanged("animated")) {
+            widget.setAnimationEnabled(getState().animated);
+        }
+        boolean criteriaChanged = stateChangeEvent
+                .hasPropertyChanged("criteria");
+        if (criteriaChanged) {
+            widget.setCriteria(getState().criteria);
+        }
+        if (criteriaChanged || stateChangeEvent.hasPropertyChanged("values")) {
+            widget.setValues(getState().values);
+        }
+        if (criteriaChanged || stateChangeEvent.hasPropertyChanged("maxValue")
+                || stateChangeEvent.hasPropertyChanged("captionSetId")
+                || stateChangeEvent.hasPropertyChanged("valueCaptions")) {
+            updateValueCaptions();
+        }
+    }
+
+    private void updateValueCaptions() {
+        getWidget().clearValueCaptions();
+        if (getState().captionSetId != null) {
+            RatingStarsCaptionRegistryConnector registry = RatingStarsCaptionRegistryConnector
+                    .find(getConnection());
+            if (registry != null) {
+                Map<Integer, String> captions = registry
+                        .getCaptions(getState().captionSetId);
+                if (captions != null) {
+                    getWidget().updateValueCaptions(captions);
+                }
+            }
+        }
+        // captions of this instance override the shared ones
+        if (getState().valueCaptions != null) {
+            getWidget().updateValueCaptions(getState().valueCaptions);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface MultiRatingStarsServerRpc extends ServerRpc {
+
+    /**
+     * Called by the {@link MultiRatingStarsConnector} when the value of a
+     * criterion is changed.
+     * 
+     * @param criterion
+     *            index of the changed criterion
+     * @param newValue
+     */
+    void valueChanged(int criterion, double newValue);
+
+}
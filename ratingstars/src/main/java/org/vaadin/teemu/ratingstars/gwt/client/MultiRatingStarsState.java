@@ -0,0 +1,26 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.Map;
+
+import com.vaadin.shared.AbstractFieldState;
+
+public class MultiRatingStarsState extends AbstractFieldState {
+    private static final long serialVersionUID = 4120846316540918276L;
+
+    /** Captions of the criteria, one row per criterion. */
+    public String[] criteria = new String[0];
+
+    /** Values of the criteria by index. */
+    public double[] values = new double[0];
+
+    /** Id of the shared caption set in {@link RatingStarsCaptionRegistryState}. */
+    public String captionSetId;
+
+    /** Captions of the values, <code>null</code> when there are none. */
+    public Map<Integer, String> valueCaptions;
+
+    public boolean animated = true;
+
+    public int maxValue = 5;
+
+}
@@ -0,0 +1,145 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
+import com.google.gwt.event.logical.shared.ValueChangeHandler;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.Label;
+
+/**
+ * MultiRatingStarsWidget shows one row of stars per criterion, each row
+ * having the caption of the criterion and a {@link RatingStarsWidget}. The
+ * rows use the document-level event handler shared by all widgets, so the
+ * number of event listeners doesn't grow with the criteria.
+ *
+ * <pre>
+ *    div.v-multiratingstars
+ *        div.v-multiratingstars-row
+ *            div.v-multiratingstars-criterion
+ *            div.v-ratingstars-wrapper
+ *        ...
+ * </pre>
+ */
+public class MultiRatingStarsWidget extends FlowPanel {
+
+    public static final String CLASSNAME = "v-multiratingstars";
+    public static final String ROW_CLASSNAME = CLASSNAME + "-row";
+    public static final String CRITERION_CLASSNAME = CLASSNAME + "-criterion";
+
+    /**
+     * Handler notified when the user changes the value of a criterion.
+     */
+    public interface CriterionValueHandler {
+        void onValueChange(int criterion, double value);
+    }
+
+    private final List<Label> criterionLabels = new ArrayList<>();
+    private final List<RatingStarsWidget> rows = new ArrayList<>();
+    private CriterionValueHandler criterionValueHandler;
+
+    private int maxValue = 5;
+    private boolean animated = true;
+    private boolean readonly;
+
+    public MultiRatingStarsWidget() {
+        setStyleName(CLASSNAME);
+    }
+
+    public void setCriterionValueHandler(CriterionValueHandler handler) {
+        criterionValueHandler = handler;
+    }
+
+    /**
+     * Sets the criteria, adding or removing rows as needed.
+     */
+    public void setCriteria(String[] criteria) {
+        while (rows.size() > criteria.length) {
+            int last = rows.size() - 1;
+            rows.remove(last);
+            criterionLabels.remove(last);
+            remove(last);
+        }
+        while (rows.size() < criteria.length) {
+            addRow();
+        }
+        for (int i = 0; i < criteria.length; i++) {
+            criterionLabels.get(i).setText(criteria[i]);
+        }
+    }
+
+    private void addRow() {
+        final int criterion = rows.size();
+
+        Label label = new Label();
+        label.setStyleName(CRITERION_CLASSNAME);
+
+        RatingStarsWidget stars = new RatingStarsWidget();
+        stars.setEventDelegationEnabled(true);
+        stars.setMaxValue(maxValue);
+        stars.setAnimationEnabled(animated);
+        stars.setReadOnly(readonly);
+        stars.addValueChangeHandler(new ValueChangeHandler<Double>() {
+            @Override
+            public void onValueChange(ValueChangeEvent<Double> event) {
+                if (criterionValueHandler != null) {
+                    criterionValueHandler.onValueChange(criterion,
+                            event.getValue());
+                }
+            }
+        });
+
+        FlowPanel row = new FlowPanel();
+        row.setStyleName(ROW_CLASSNAME);
+        row.add(label);
+        row.add(stars);
+        add(row);
+
+        criterionLabels.add(label);
+        rows.add(stars);
+    }
+
+    /**
+     * Sets the values of the criteria without firing events.
+     */
+    public void setValues(double[] values) {
+        for (int i = 0; i < rows.size() && i < values.length; i++) {
+            rows.get(i).setValue(values[i]);
+        }
+    }
+
+    public void setMaxValue(int maxValue) {
+        this.maxValue = maxValue;
+        for (RatingStarsWidget stars : rows) {
+            stars.setMaxValue(maxValue);
+        }
+    }
+
+    public void setAnimationEnabled(boolean enable) {
+        animated = enable;
+        for (RatingStarsWidget stars : rows) {
+            stars.setAnimationEnabled(enable);
+        }
+    }
+
+    public void setReadOnly(boolean readonly) {
+        this.readonly = readonly;
+        for (RatingStarsWidget stars : rows) {
+            stars.setReadOnly(readonly);
+        }
+    }
+
+    void clearValueCaptions() {
+        for (RatingStarsWidget stars : rows) {
+            stars.clearValueCaptions();
+        }
+    }
+
+    void updateValueCaptions(Map<Integer, String> valueCaptions) {
+        for (RatingStarsWidget stars : rows) {
+            stars.updateValueCaptions(valueCaptions);
+        }
+    }
+}
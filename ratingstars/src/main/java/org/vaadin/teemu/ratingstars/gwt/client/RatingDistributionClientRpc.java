@@ -0,0 +1,19 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface RatingDistributionClientRpc extends ClientRpc {
+
+    /**
+     * Called by the server to update only the rows whose rounded percentage
+     * has changed since the state was last sent in full.
+     * 
+     * @param rows
+     *            indexes of the changed rows, index zero being step
+     *            <code>1</code>
+     * @param percentages
+     *            the new percentages of the rows in the same order
+     */
+    void updateRows(int[] rows, int[] percentages);
+
+}
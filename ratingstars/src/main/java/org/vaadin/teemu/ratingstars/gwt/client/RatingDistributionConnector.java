@@ -0,0 +1,58 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.ui.AbstractComponentConnector;
+import com.vaadin.shared.ui.Connect;
+import org.vaadin.teemu.ratingstars.RatingDistribution;
+
+@Connect(RatingDistribution.class)
+public class RatingDistributionConnector extends AbstractComponentConnector {
+
+    private static final long serialVersionUID = -1861262475339617624L;
+
+    @Override
+    protected void init() {
+        super.init();
+        registerRpc(RatingDistributionClientRpc.class,
+                new RatingDistributionClientRpc() {
+                    @Override
+                    public void updateRows(int[] rows, int[] percentages) {
+                        for (int i = 0; i < rows.length; i++) {
+                            getWidget().setPercentage(rows[i], percentages[i]);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    protected Widget createWidget() {
+        return GWT.create(RatingDistributionWidget.class);
+    }
+
+    @Override
+    public RatingDistributionWidget getWidget() {
+        return (RatingDistributionWidget) super.getWidget();
+    }
+
+    @Override
+    public RatingDistributionState getState() {
+        return (RatingDistributionState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        RatingDistributionWidget widget = getWidget();
+        if (stateChangeEvent.hasPropertyChanged("animated")) {
+            widget.setAnimationEnabled(getState().animated);
+        }
+        if (stateChangeEvent.hasPropertyChanged("percentages")
+                || stateChangeEvent.hasPropertyChanged("stepsPerValue")) {
+            widget.setPercentages(getState().stepsPerValue,
+                    getState().percentages);
+        }
+    }
+}
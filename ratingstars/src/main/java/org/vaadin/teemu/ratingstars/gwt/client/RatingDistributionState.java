@@ -0,0 +1,19 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.shared.AbstractComponentState;
+
+public class RatingDistributionState extends AbstractComponentState {
+    private static final long serialVersionUID = -4713908421735266103L;
+
+    /**
+     * Rounded percentages of the votes by step, index zero holding step
+     * <code>1</code>. Sent in full only when the connector is created, the
+     * changes are sent with {@link RatingDistributionClientRpc}.
+     */
+    public int[] percentages = new int[0];
+
+    public int stepsPerValue = 1;
+
+    public boolean animated = true;
+
+}
@@ -0,0 +1,153 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * RatingDistributionWidget is the client-side implementation of the
+ * RatingDistribution component. It shows a row per rating step from the
+ * largest to the smallest, each row having the bar of the RatingStars theme
+ * sized by the percentage of the votes:
+ *
+ * <pre>
+ *    div.v-ratingdistribution
+ *        div.v-ratingdistribution-row
+ *            div.v-ratingdistribution-label
+ *            div.v-ratingstars
+ *                div.v-ratingstars-bar
+ *            div.v-ratingdistribution-percentage
+ *        ...
+ * </pre>
+ *
+ * Changing the percentage of a row writes only the bar width and the text of
+ * that row.
+ */
+public class RatingDistributionWidget extends Widget {
+
+    public static final String CLASSNAME = "v-ratingdistribution";
+    public static final String ROW_CLASSNAME = CLASSNAME + "-row";
+    public static final String LABEL_CLASSNAME = CLASSNAME + "-label";
+    public static final String PERCENTAGE_CLASSNAME = CLASSNAME
+            + "-percentage";
+
+    private static final String STAR = "\u2605";
+
+    /** Bars and percentage texts by row, index zero being step 1. */
+    private Element[] bars = new Element[0];
+    private Element[] percentageElements = new Element[0];
+    private int[] percentages = new int[0];
+    private int stepsPerValue = 1;
+
+    private boolean animated = true;
+
+    public RatingDistributionWidget() {
+        InlinedStyles.ensureInjected();
+        setElement(Document.get().createDivElement());
+        setStyleName(CLASSNAME);
+    }
+
+    /**
+     * Sets the percentages of all rows, recreating the rows if their number
+     * or the steps per value change.
+     *
+     * @param stepsPerValue
+     *            number of rows per whole rating value
+     * @param percentages
+     *            percentages by row, index zero being step 1
+     */
+    public void setPercentages(int stepsPerValue, int[] percentages) {
+        if (percentages.length != bars.length
+                || stepsPerValue != this.stepsPerValue) {
+            createRows(stepsPerValue, percentages.length);
+        }
+        for (int row = 0; row < percentages.length; row++) {
+            setPercentage(row, percentages[row]);
+        }
+    }
+
+    private void createRows(int stepsPerValue, int rowCount) {
+        this.stepsPerValue = stepsPerValue;
+        getElement().removeAllChildren();
+        bars = new Element[rowCount];
+        percentageElements = new Element[rowCount];
+        percentages = new int[rowCount];
+
+        // the largest rating on top
+        for (int row = rowCount - 1; row >= 0; row--) {
+            DivElement rowElement = Document.get().createDivElement();
+            rowElement.setClassName(ROW_CLASSNAME);
+
+            DivElement label = Document.get().createDivElement();
+            label.setClassName(LABEL_CLASSNAME);
+            label.setInnerText(formatStep(row + 1, stepsPerValue) + STAR);
+            rowElement.appendChild(label);
+
+            DivElement track = Document.get().createDivElement();
+            track.setClassName(RatingStarsWidget.CLASSNAME);
+            DivElement bar = Document.get().createDivElement();
+            bar.setClassName(RatingStarsWidget.BAR_CLASSNAME);
+            if (animated) {
+                bar.addClassName(RatingStarsWidget.BAR_TRANSITION_CLASSNAME);
+            }
+            bar.getStyle().setWidth(0, Unit.PCT);
+            track.appendChild(bar);
+            rowElement.appendChild(track);
+
+            DivElement percentage = Document.get().createDivElement();
+            percentage.setClassName(PERCENTAGE_CLASSNAME);
+            percentage.setInnerText("0%");
+            rowElement.appendChild(percentage);
+
+            getElement().appendChild(rowElement);
+            bars[row] = bar;
+            percentageElements[row] = percentage;
+        }
+    }
+
+    private static String formatStep(int step, int stepsPerValue) {
+        if (step % stepsPerValue == 0) {
+            return String.valueOf(step / stepsPerValue);
+        }
+        return String.valueOf((double) step / stepsPerValue);
+    }
+
+    /**
+     * Sets the percentage of a single row. Does nothing if the row doesn't
+     * exist or the percentage is unchanged.
+     *
+     * @param row
+     *            index of the row, zero being step 1
+     * @param percentage
+     */
+    public void setPercentage(int row, int percentage) {
+        if (row < 0 || row >= bars.length || percentages[row] == percentage) {
+            return;
+        }
+        percentages[row] = percentage;
+        bars[row].getStyle().setWidth(percentage, Unit.PCT);
+        percentageElements[row].setInnerText(percentage + "%");
+    }
+
+    /**
+     * Sets whether the changes of the bars are animated with a CSS
+     * transition.
+     *
+     * @param enable
+     */
+    public void setAnimationEnabled(boolean enable) {
+        if (animated != enable) {
+            animated = enable;
+            for (Element bar : bars) {
+                if (enable) {
+                    bar.addClassName(RatingStarsWidget.BAR_TRANSITION_CLASSNAME);
+                } else {
+                    bar.removeClassName(RatingStarsWidget.BAR_TRANSITION_CLASSNAME);
+                }
+            }
+        }
+    }
+
+}
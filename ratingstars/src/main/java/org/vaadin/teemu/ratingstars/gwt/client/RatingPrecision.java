@@ -0,0 +1,50 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+/**
+ * Defines the fractions of a star the user can give as a rating.
+ */
+public enum RatingPrecision {
+
+    /** Only whole stars, the value follows the hovered star. */
+    WHOLE(1),
+
+    /** Half stars, the value follows the pointer within the stars. */
+    HALF(2),
+
+    /** Tenths of a star, the value follows the pointer within the stars. */
+    TENTH(10);
+
+    private final int steps;
+
+    private RatingPrecision(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * @return number of selectable steps per star
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Rounds the given value up to the closest step of this precision.
+     * 
+     * @param value
+     * @return the rounded value
+     */
+    public double roundUp(double value) {
+        return Math.ceil(value * steps) / steps;
+    }
+
+    /**
+     * Rounds the given value to the closest step of this precision.
+     * 
+     * @param value
+     * @return the rounded value
+     */
+    public double round(double value) {
+        return Math.round(value * steps) / (double) steps;
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.client.ApplicationConnection;
+import com.vaadin.client.ServerConnector;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.communication.StateChangeEvent.StateChangeHandler;
+import com.vaadin.client.extensions.AbstractExtensionConnector;
+import com.vaadin.shared.ui.Connect;
+import org.vaadin.teemu.ratingstars.RatingStarsCaptionRegistry;
+
+@Connect(RatingStarsCaptionRegistry.class)
+public class RatingStarsCaptionRegistryConnector extends
+        AbstractExtensionConnector {
+
+    private static final long serialVersionUID = 2398720386342547871L;
+
+    /** Connectors using a shared configuration, by the id of the configuration. */
+    private final Map<String, List<RatingStarsConnector>> configUsers = new HashMap<>();
+
+    /** Configurations the users have been notified of. */
+    private Map<String, RatingStarsConfigState> notifiedConfigs = new HashMap<>();
+
+    @Override
+    protected void init() {
+        super.init();
+        addStateChangeHandler("configs", new StateChangeHandler() {
+            @Override
+            public void onStateChanged(StateChangeEvent event) {
+                notifyConfigUsers();
+            }
+        });
+    }
+
+    @Override
+    protected void extend(ServerConnector target) {
+        // NOOP, the registry only holds state
+    }
+
+    @Override
+    public RatingStarsCaptionRegistryState getState() {
+        return (RatingStarsCaptionRegistryState) super.getState();
+    }
+
+    /**
+     * Returns the captions registered with the given id or <code>null</code>
+     * if no such caption set has been registered.
+     */
+    Map<Integer, String> getCaptions(String captionSetId) {
+        return getState().captionSets.get(captionSetId);
+    }
+
+    /**
+     * Returns the configuration registered with the given id or
+     * <code>null</code> if no such configuration has been registered.
+     */
+    RatingStarsConfigState getConfig(String configId) {
+        return getState().configs.get(configId);
+    }
+
+    /**
+     * Notifies the connector when the configuration with the given id
+     * changes.
+     */
+    void addConfigUser(String configId, RatingStarsConnector connector) {
+        List<RatingStarsConnector> users = configUsers.get(configId);
+        if (users == null) {
+            users = new ArrayList<>();
+            configUsers.put(configId, users);
+        }
+        if (!users.contains(connector)) {
+            users.add(connector);
+        }
+    }
+
+    void removeConfigUser(String configId, RatingStarsConnector connector) {
+        List<RatingStarsConnector> users = configUsers.get(configId);
+        if (users != null && users.remove(connector) && users.isEmpty()) {
+            configUsers.remove(configId);
+        }
+    }
+
+    /**
+     * Notifies the users of the configurations that differ from the ones
+     * notified last. The whole map is received when any configuration
+     * changes, so the others are compared by value.
+     */
+    private void notifyConfigUsers() {
+        Map<String, RatingStarsConfigState> configs = getState().configs;
+        for (Map.Entry<String, RatingStarsConfigState> entry : configs
+                .entrySet()) {
+            List<RatingStarsConnector> users = configUsers.get(entry.getKey());
+            if (users != null && !entry.getValue().equals(
+                    notifiedConfigs.get(entry.getKey()))) {
+                for (RatingStarsConnector user : new ArrayList<>(users)) {
+                    user.configChanged();
+                }
+            }
+        }
+        notifiedConfigs = new HashMap<>(configs);
+    }
+
+    /**
+     * Finds the registry extending the UI of the given connection.
+     * 
+     * @return the registry or <code>null</code> if none exists
+     */
+    static RatingStarsCaptionRegistryConnector find(
+            ApplicationConnection connection) {
+        for (ServerConnector child : connection.getUIConnector().getChildren()) {
+            if (child instanceof RatingStarsCaptionRegistryConnector) {
+                return (RatingStarsCaptionRegistryConnector) child;
+            }
+        }
+        return null;
+    }
+}
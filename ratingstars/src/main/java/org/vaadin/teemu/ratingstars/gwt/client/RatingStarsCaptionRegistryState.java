@@ -0,0 +1,17 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vaadin.shared.communication.SharedState;
+
+public class RatingStarsCaptionRegistryState extends SharedState {
+    private static final long serialVersionUID = -4640212390960934765L;
+
+    /** Registered caption sets by their id. */
+    public Map<String, Map<Integer, String>> captionSets = new HashMap<>();
+
+    /** Registered configurations by their id. */
+    public Map<String, RatingStarsConfigState> configs = new HashMap<>();
+
+}
@@ -0,0 +1,28 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.Map;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface RatingStarsClientRpc extends ClientRpc {
+
+    /**
+     * Called by the server to update only the value captions that have
+     * changed since the state was last sent in full.
+     * 
+     * @param changedCaptions
+     *            the changed captions by rating values, a <code>null</code>
+     *            caption removes the caption of the value
+     */
+    void updateValueCaptions(Map<Integer, String> changedCaptions);
+
+    /**
+     * Called by the server when a value given by the user was rejected to
+     * restore the value shown by the widget.
+     * 
+     * @param value
+     *            the current value of the component
+     */
+    void restoreValue(double value);
+
+}
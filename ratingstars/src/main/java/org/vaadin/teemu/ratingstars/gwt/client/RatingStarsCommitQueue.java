@@ -0,0 +1,84 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Values given by the user waiting to be sent to the server, shared by all
+ * {@link RatingStarsConnector}s of the page. Only the last value of each
+ * connector is kept. The pending values of all connectors are sent together
+ * when the page has been idle for the commit delay, so they are delivered to
+ * the server in one request.
+ */
+final class RatingStarsCommitQueue {
+
+    private static class Pending {
+        private final double value;
+        private final boolean waitForBlur;
+
+        private Pending(double value, boolean waitForBlur) {
+            this.value = value;
+            this.waitForBlur = waitForBlur;
+        }
+    }
+
+    private static final Map<RatingStarsConnector, Pending> pending = new LinkedHashMap<>();
+
+    private static final Timer timer = new Timer() {
+        @Override
+        public void run() {
+            flush(null);
+        }
+    };
+
+    private RatingStarsCommitQueue() {
+    }
+
+    /**
+     * Queues the value to be sent when no new values have been given for the
+     * given delay.
+     */
+    static void debounce(RatingStarsConnector connector, double value,
+            int delayMillis) {
+        pending.put(connector, new Pending(value, false));
+        timer.schedule(Math.max(0, delayMillis));
+    }
+
+    /**
+     * Queues the value to be sent when the connector loses focus.
+     */
+    static void holdUntilBlur(RatingStarsConnector connector, double value) {
+        pending.put(connector, new Pending(value, true));
+    }
+
+    /**
+     * Sends the value of the given connector together with all values not
+     * waiting for a blur.
+     */
+    static void flush(RatingStarsConnector blurred) {
+        List<RatingStarsConnector> connectors = new ArrayList<>();
+        for (Map.Entry<RatingStarsConnector, Pending> entry : pending.entrySet()) {
+            if (!entry.getValue().waitForBlur || entry.getKey() == blurred) {
+                connectors.add(entry.getKey());
+            }
+        }
+        // the remaining values are waiting for a blur
+        timer.cancel();
+        for (RatingStarsConnector connector : connectors) {
+            // calls made in the same event loop are sent in one request
+            connector.commit(pending.remove(connector).value);
+        }
+    }
+
+    /**
+     * Discards the value of the given connector.
+     */
+    static void remove(RatingStarsConnector connector) {
+        pending.remove(connector);
+    }
+
+}
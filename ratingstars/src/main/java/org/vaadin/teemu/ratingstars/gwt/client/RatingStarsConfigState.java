@@ -0,0 +1,46 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Values of a shared configuration in {@link RatingStarsCaptionRegistryState}.
+ */
+public class RatingStarsConfigState implements Serializable {
+    private static final long serialVersionUID = -2561374106584123057L;
+
+    public int maxValue = 5;
+
+    public boolean animated = true;
+
+    public String captionSetId;
+
+    public String styleName;
+
+    public CommitPolicy commitPolicy = CommitPolicy.IMMEDIATE;
+
+    public int commitDelay = 300;
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RatingStarsConfigState)) {
+            return false;
+        }
+        RatingStarsConfigState other = (RatingStarsConfigState) obj;
+        return maxValue == other.maxValue && animated == other.animated
+                && Objects.equals(captionSetId, other.captionSetId)
+                && Objects.equals(styleName, other.styleName)
+                && commitPolicy == other.commitPolicy
+                && commitDelay == other.commitDelay;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxValue, animated, captionSetId, styleName,
+                commitPolicy, commitDelay);
+    }
+
+}
@@ -1,6 +1,10 @@
 package org.vaadin.teemu.ratingstars.gwt.client;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.user.client.ui.Widget;
@@ -19,10 +23,53 @@ public class RatingStarsConnector extends AbstractFieldConnector implements
     private RatingStarsServerRpc rpc = RpcProxy.create(
             RatingStarsServerRpc.class, this);
 
+    /** Captions of this instance, the state updated with the received deltas. */
+    private final Map<Integer, String> valueCaptions = new HashMap<>();
+
+    /** Id of the shared configuration this is registered as a user of. */
+    private String usedConfigId;
+
+    /** Shared configuration applied last. */
+    private RatingStarsConfigState appliedConfig;
+
+    /** Style name added by the shared configuration. */
+    private String configStyleName;
+
     @Override
     protected void init() {
         super.init();
         getWidget().addValueChangeHandler(this);
+        getWidget().setBlurCommand(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                RatingStarsCommitQueue.flush(RatingStarsConnector.this);
+            }
+        });
+        registerRpc(RatingStarsClientRpc.class, new RatingStarsClientRpc() {
+            @Override
+            public void updateValueCaptions(Map<Integer, String> changedCaptions) {
+                boolean removed = false;
+                for (Map.Entry<Integer, String> entry : changedCaptions.entrySet()) {
+                    if (entry.getValue() != null) {
+                        valueCaptions.put(entry.getKey(), entry.getValue());
+                    } else {
+                        valueCaptions.remove(entry.getKey());
+                        removed = true;
+                    }
+                }
+                if (removed) {
+                    // fall back to the shared captions of the removed values
+                    RatingStarsConnector.this.updateValueCaptions();
+                } else {
+                    getWidget().updateValueCaptions(changedCaptions);
+                }
+            }
+
+            @Override
+            public void restoreValue(double value) {
+                getWidget().setValue(value, false);
+            }
+        });
     }
 
     @Override
@@ -45,11 +92,147 @@ public class RatingStarsConnector extends AbstractFieldConnector implements
         super.onStateChanged(stateChangeEvent);
 
         getWidget().setReadOnly(getState().readOnly);
-        getWidget().updateValueCaptions(getState().valueCaptions);
+        if (configStyleName != null) {
+            // the style names of the state may have replaced it
+            getWidget().addStyleName(configStyleName);
+        }
+        if (stateChangeEvent.hasPropertyChanged("valueCaptions")) {
+            valueCaptions.clear();
+            if (getState().valueCaptions != null) {
+                valueCaptions.putAll(getState().valueCaptions);
+            }
+        }
+        if (stateChangeEvent.hasPropertyChanged("configId")
+                || stateChangeEvent.hasPropertyChanged("maxValue")
+                || stateChangeEvent.hasPropertyChanged("animated")) {
+            applyConfig();
+        } else if (stateChangeEvent.hasPropertyChanged("captionSetId")
+                || stateChangeEvent.hasPropertyChanged("valueCaptions")) {
+            updateValueCaptions();
+        }
+    }
+
+    /**
+     * Returns the shared configuration of this component or <code>null</code>
+     * if none is used.
+     */
+    private RatingStarsConfigState getConfig() {
+        if (getState().configId == null) {
+            return null;
+        }
+        RatingStarsCaptionRegistryConnector registry = RatingStarsCaptionRegistryConnector
+                .find(getConnection());
+        if (registry == null) {
+            return null;
+        }
+        if (!getState().configId.equals(usedConfigId)) {
+            if (usedConfigId != null) {
+                registry.removeConfigUser(usedConfigId, this);
+            }
+            usedConfigId = getState().configId;
+            registry.addConfigUser(usedConfigId, this);
+        }
+        return registry.getConfig(usedConfigId);
+    }
+
+    /**
+     * Called by the registry when the shared configuration of this component
+     * has changed. Does nothing if it has been applied already.
+     */
+    void configChanged() {
+        RatingStarsConfigState config = getConfig();
+        if (config != null && !config.equals(appliedConfig)) {
+            applyConfig();
+        }
+    }
+
+    /**
+     * Applies the shared configuration, or the values of the state if there
+     * is none, to the widget.
+     */
+    private void applyConfig() {
+        RatingStarsConfigState config = getConfig();
+        appliedConfig = config;
+        if (configStyleName != null) {
+            getWidget().removeStyleName(configStyleName);
+            configStyleName = null;
+        }
+        if (config != null) {
+            getWidget().setMaxValue(config.maxValue);
+            getWidget().setAnimationEnabled(config.animated);
+            if (config.styleName != null) {
+                configStyleName = config.styleName;
+                getWidget().addStyleName(configStyleName);
+            }
+        } else {
+            getWidget().setMaxValue(getState().maxValue);
+            getWidget().setAnimationEnabled(getState().animated);
+        }
+        updateValueCaptions();
+    }
+
+    private void updateValueCaptions() {
+        getWidget().clearValueCaptions();
+        String captionSetId = getState().captionSetId;
+        if (captionSetId == null) {
+            RatingStarsConfigState config = getConfig();
+            captionSetId = config != null ? config.captionSetId : null;
+        }
+        if (captionSetId != null) {
+            RatingStarsCaptionRegistryConnector registry = RatingStarsCaptionRegistryConnector
+                    .find(getConnection());
+            if (registry != null) {
+                Map<Integer, String> captions = registry
+                        .getCaptions(captionSetId);
+                if (captions != null) {
+                    getWidget().updateValueCaptions(captions);
+                }
+            }
+        }
+        // captions of this instance override the shared ones
+        getWidget().updateValueCaptions(valueCaptions);
+    }
+
+    @Override
+    public void onUnregister() {
+        super.onUnregister();
+        RatingStarsCommitQueue.remove(this);
+        if (usedConfigId != null) {
+            RatingStarsCaptionRegistryConnector registry = RatingStarsCaptionRegistryConnector
+                    .find(getConnection());
+            if (registry != null) {
+                registry.removeConfigUser(usedConfigId, this);
+            }
+            usedConfigId = null;
+        }
     }
 
     @Override
     public void onValueChange(ValueChangeEvent<Double> event) {
-        rpc.valueChanged(event.getValue());
+        double value = event.getValue();
+        RatingStarsConfigState config = getConfig();
+        CommitPolicy commitPolicy = config != null ? config.commitPolicy
+                : getState().commitPolicy;
+        switch (commitPolicy) {
+        case DEBOUNCED:
+            RatingStarsCommitQueue.debounce(this, value,
+                    config != null ? config.commitDelay
+                            : getState().commitDelay);
+            break;
+        case ON_BLUR:
+            RatingStarsCommitQueue.holdUntilBlur(this, value);
+            break;
+        default:
+            commit(value);
+        }
+    }
+
+    /**
+     * Sends the given value to the server.
+     * 
+     * @param value
+     */
+    void commit(double value) {
+        rpc.valueChanged(value);
     }
 }
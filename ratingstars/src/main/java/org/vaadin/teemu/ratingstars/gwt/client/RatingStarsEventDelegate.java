@@ -0,0 +1,110 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.BodyElement;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.user.client.Event;
+
+/**
+ * A single set of document-level event listeners serving all
+ * {@link RatingStarsWidget}s in the delegated event mode. The widget of an
+ * event is found from a property of its root element, and the star from its
+ * precomputed <code>rating</code> property.
+ */
+final class RatingStarsEventDelegate {
+
+    /** Property of the widget root element referring to the widget. */
+    private static final String WIDGET_PROPERTY = "__ratingstars";
+
+    /** Event types for which a document-level listener is installed. */
+    private static int installedEvents;
+
+    private static JavaScriptObject listener;
+
+    private RatingStarsEventDelegate() {
+    }
+
+    /**
+     * Registers the widget to receive the given events.
+     * 
+     * @param events
+     *            bitmask of the {@link Event} types the widget needs, focus
+     *            and blur are always delivered
+     */
+    static void register(RatingStarsWidget widget, int events) {
+        events |= Event.ONFOCUS | Event.ONBLUR;
+        if ((installedEvents & events) != events) {
+            install(events & ~installedEvents);
+            installedEvents |= events;
+        }
+        widget.getElement().setPropertyObject(WIDGET_PROPERTY, widget);
+    }
+
+    static void unregister(RatingStarsWidget widget) {
+        widget.getElement().setPropertyObject(WIDGET_PROPERTY, null);
+    }
+
+    private static void install(int events) {
+        if ((events & Event.ONCLICK) != 0) {
+            addListener("click");
+        }
+        if ((events & Event.ONMOUSEOVER) != 0) {
+            addListener("mouseover");
+        }
+        if ((events & Event.ONMOUSEOUT) != 0) {
+            addListener("mouseout");
+        }
+        if ((events & Event.ONMOUSEMOVE) != 0) {
+            addListener("mousemove");
+        }
+        if ((events & Event.ONKEYUP) != 0) {
+            addListener("keyup");
+        }
+        if ((events & Event.ONFOCUS) != 0) {
+            addListener("focusin");
+        }
+        if ((events & Event.ONBLUR) != 0) {
+            addListener("focusout");
+        }
+    }
+
+    private static native void addListener(String type)
+    /*-{
+        var listener = @org.vaadin.teemu.ratingstars.gwt.client.RatingStarsEventDelegate::listener;
+        if (!listener) {
+            listener = $entry(function(e) {
+                @org.vaadin.teemu.ratingstars.gwt.client.RatingStarsEventDelegate::dispatch(*)(e);
+            });
+            @org.vaadin.teemu.ratingstars.gwt.client.RatingStarsEventDelegate::listener = listener;
+        }
+        $doc.addEventListener(type, listener, false);
+    }-*/;
+
+    private static void dispatch(NativeEvent event) {
+        if (!Element.is(event.getEventTarget())) {
+            return;
+        }
+
+        // find the widget root element of the event target
+        Element element = Element.as(event.getEventTarget());
+        while (element != null && !BodyElement.is(element)) {
+            Object widget = element.getPropertyObject(WIDGET_PROPERTY);
+            if (widget != null) {
+                ((RatingStarsWidget) widget).onDelegatedEvent(
+                        getTypeInt(event.getType()), event.<Event> cast());
+                return;
+            }
+            element = element.getParentElement();
+        }
+    }
+
+    private static int getTypeInt(String type) {
+        if ("focusin".equals(type)) {
+            return Event.ONFOCUS;
+        } else if ("focusout".equals(type)) {
+            return Event.ONBLUR;
+        }
+        return Event.getTypeInt(type);
+    }
+}
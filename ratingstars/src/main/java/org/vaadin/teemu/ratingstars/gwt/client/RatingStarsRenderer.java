@@ -0,0 +1,133 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.google.gwt.dom.client.BrowserEvents;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.NativeEvent;
+import com.vaadin.client.renderers.ComplexRenderer;
+import com.vaadin.client.widget.grid.CellReference;
+import com.vaadin.client.widget.grid.RendererCellReference;
+
+/**
+ * RatingStarsRenderer draws the stars of {@link RatingStarsWidget} inside Grid
+ * cells. The DOM of a cell is the same as the DOM of the widget (and thus uses
+ * the same CSS), but there's no widget instance per cell. Cells are recycled by
+ * the Grid, so the amount of DOM grows with the visible rows only.
+ * 
+ * <pre>
+ *    td
+ *        div.v-ratingstars-wrapper
+ *            div.v-ratingstars
+ *                div.v-ratingstars-star
+ *                ...
+ *                div.v-ratingstars-bar
+ * </pre>
+ */
+public class RatingStarsRenderer extends ComplexRenderer<Double> {
+
+    /**
+     * Handler notified when the user clicks a star inside a cell.
+     */
+    public interface RatingHandler {
+        void onRating(CellReference<?> cell, double newValue);
+    }
+
+    private static final String VALUE_PROPERTY = "ratingValue";
+
+    private int maxValue = 5;
+    private boolean readOnly;
+    private RatingHandler ratingHandler;
+
+    @Override
+    public void init(RendererCellReference cell) {
+        InlinedStyles.ensureInjected();
+        DivElement wrapper = Document.get().createDivElement();
+        wrapper.setClassName(RatingStarsWidget.WRAPPER_CLASSNAME);
+        wrapper.appendChild(createStarsElement());
+        cell.getElement().appendChild(wrapper);
+    }
+
+    private Element createStarsElement() {
+        DivElement element = Document.get().createDivElement();
+        element.setClassName(RatingStarsWidget.CLASSNAME);
+        for (int i = 0; i < maxValue; i++) {
+            element.appendChild(RatingStarsWidget.createStarDiv(i + 1));
+        }
+        DivElement barDiv = Document.get().createDivElement();
+        barDiv.setClassName(RatingStarsWidget.BAR_CLASSNAME);
+        element.appendChild(barDiv);
+        return element;
+    }
+
+    @Override
+    public void render(RendererCellReference cell, Double data) {
+        double value = data != null ? data : 0.0;
+        Element wrapper = cell.getElement().getFirstChildElement();
+        Element element = wrapper.getFirstChildElement();
+        if (element.getChildCount() != maxValue + 1) {
+            // maximum value has changed since the cell was initialized
+            Element newElement = createStarsElement();
+            wrapper.replaceChild(newElement, element);
+            element = newElement;
+        }
+        wrapper.setPropertyDouble(VALUE_PROPERTY, value);
+        setBarWidth(element, value);
+    }
+
+    private void setBarWidth(Element element, double forValue) {
+        Element barDiv = element.getLastChild().cast();
+        barDiv.getStyle().setProperty("width",
+                RatingStarsWidget.calcBarWidth(forValue, maxValue) + "%");
+    }
+
+    @Override
+    public Collection<String> getConsumedEvents() {
+        return Arrays.asList(BrowserEvents.CLICK, BrowserEvents.MOUSEOVER,
+                BrowserEvents.MOUSEOUT);
+    }
+
+    @Override
+    public boolean onBrowserEvent(CellReference<?> cell, NativeEvent event) {
+        if (readOnly || !Element.is(event.getEventTarget())) {
+            return false;
+        }
+
+        Element wrapper = cell.getElement().getFirstChildElement();
+        Element element = wrapper.getFirstChildElement();
+        Element target = Element.as(event.getEventTarget());
+        int rating = target.getPropertyInt("rating");
+
+        String type = event.getType();
+        if (BrowserEvents.MOUSEOVER.equals(type)) {
+            if (rating > 0) {
+                setBarWidth(element, rating);
+            }
+        } else if (BrowserEvents.MOUSEOUT.equals(type)) {
+            setBarWidth(element, wrapper.getPropertyDouble(VALUE_PROPERTY));
+        } else if (BrowserEvents.CLICK.equals(type) && rating > 0) {
+            wrapper.setPropertyDouble(VALUE_PROPERTY, rating);
+            setBarWidth(element, rating);
+            if (ratingHandler != null) {
+                ratingHandler.onRating(cell, rating);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public void setMaxValue(int maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public void setRatingHandler(RatingHandler ratingHandler) {
+        this.ratingHandler = ratingHandler;
+    }
+}
@@ -0,0 +1,50 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.client.connectors.grid.AbstractGridRendererConnector;
+import com.vaadin.client.widget.grid.CellReference;
+import com.vaadin.client.widgets.Grid.Column;
+import com.vaadin.shared.ui.Connect;
+
+import elemental.json.JsonObject;
+
+@Connect(org.vaadin.teemu.ratingstars.RatingStarsRenderer.class)
+public class RatingStarsRendererConnector extends
+        AbstractGridRendererConnector<Double> implements
+        RatingStarsRenderer.RatingHandler {
+
+    private static final long serialVersionUID = 1870341963287539745L;
+
+    @Override
+    protected void init() {
+        super.init();
+        getRenderer().setRatingHandler(this);
+    }
+
+    @Override
+    public RatingStarsRenderer getRenderer() {
+        return (RatingStarsRenderer) super.getRenderer();
+    }
+
+    @Override
+    public RatingStarsRendererState getState() {
+        return (RatingStarsRendererState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        getRenderer().setMaxValue(getState().maxValue);
+        getRenderer().setReadOnly(getState().readOnly);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onRating(CellReference<?> cell, double newValue) {
+        getRpcProxy(RatingStarsRendererServerRpc.class).valueChanged(
+                getRowKey((JsonObject) cell.getRow()),
+                getColumnId((Column<?, JsonObject>) cell.getColumn()),
+                newValue);
+    }
+}
@@ -0,0 +1,19 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface RatingStarsRendererServerRpc extends ServerRpc {
+
+    /**
+     * Called by the {@link RatingStarsRendererConnector} when a star is
+     * clicked inside a Grid cell.
+     * 
+     * @param rowKey
+     *            the key of the row whose rating was changed
+     * @param columnId
+     *            the id of the column rendered by the renderer
+     * @param newValue
+     */
+    void valueChanged(String rowKey, String columnId, double newValue);
+
+}
@@ -0,0 +1,12 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.vaadin.shared.ui.grid.renderers.AbstractRendererState;
+
+public class RatingStarsRendererState extends AbstractRendererState {
+    private static final long serialVersionUID = -2153479520462853317L;
+
+    public int maxValue = 5;
+
+    public boolean readOnly;
+
+}
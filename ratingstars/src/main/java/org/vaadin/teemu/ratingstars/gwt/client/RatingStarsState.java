@@ -3,21 +3,145 @@ package org.vaadin.teemu.ratingstars.gwt.client;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.gwt.core.shared.GwtIncompatible;
 import com.vaadin.shared.AbstractFieldState;
 import com.vaadin.shared.annotations.DelegateToWidget;
 
+/**
+ * Shared state of RatingStars. The state is serialized with the session, so
+ * the fields of this class are written in a compact custom form instead of
+ * the default one. Remember to update {@link #writeObject} and
+ * {@link #readObject} when adding a field.
+ */
 public class RatingStarsState extends AbstractFieldState {
-    private static final long serialVersionUID = 3623150608620619618L;
+    private static final long serialVersionUID = 5380617212485063946L;
 
-    public Map<Integer, String> valueCaptions = new HashMap<>();
+    /** The fields are written by {@link #writeObject}. */
+    @GwtIncompatible
+    private static final java.io.ObjectStreamField[] serialPersistentFields = {};
 
-    @DelegateToWidget("setAnimationEnabled")
-    public boolean animated;
+    private static final int ANIMATED = 1;
+    private static final int CSS_TRANSITIONS = 1 << 1;
+    private static final int EVENT_DELEGATION = 1 << 2;
+    private static final int SINGLE_ELEMENT = 1 << 3;
+    private static final int HAS_CAPTION_SET = 1 << 4;
+    private static final int HAS_VALUE_CAPTIONS = 1 << 5;
+    private static final int HAS_CONFIG = 1 << 6;
 
-    @DelegateToWidget("setMaxValue")
-    public int maxValue;
+    /** Captions of the instance, <code>null</code> when there are none. */
+    public Map<Integer, String> valueCaptions;
+
+    /** Id of the shared caption set in {@link RatingStarsCaptionRegistryState}. */
+    public String captionSetId;
+
+    /** Id of the shared configuration in {@link RatingStarsCaptionRegistryState}. */
+    public String configId;
+
+    /**
+     * Applied by the connector together with the shared configuration, which
+     * overrides it.
+     */
+    public boolean animated = true;
+
+    @DelegateToWidget("setCssTransitionsEnabled")
+    public boolean cssTransitions;
+
+    @DelegateToWidget("setEventDelegationEnabled")
+    public boolean eventDelegation;
+
+    @DelegateToWidget("setSingleElementEnabled")
+    public boolean singleElement;
+
+    public CommitPolicy commitPolicy = CommitPolicy.IMMEDIATE;
+
+    /** Delay in milliseconds used by {@link CommitPolicy#DEBOUNCED}. */
+    public int commitDelay = 300;
+
+    /**
+     * Applied by the connector together with the shared configuration, which
+     * overrides it.
+     */
+    public int maxValue = 5;
+
+    @DelegateToWidget("setPrecision")
+    public RatingPrecision precision = RatingPrecision.WHOLE;
 
     @DelegateToWidget("setValue")
-    public Double value;
+    public double value;
+
+    @GwtIncompatible
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+        out.defaultWriteObject();
+        int flags = (animated ? ANIMATED : 0) | (cssTransitions ? CSS_TRANSITIONS : 0)
+                | (eventDelegation ? EVENT_DELEGATION : 0) | (singleElement ? SINGLE_ELEMENT : 0)
+                | (captionSetId != null ? HAS_CAPTION_SET : 0) | (valueCaptions != null ? HAS_VALUE_CAPTIONS : 0)
+                | (configId != null ? HAS_CONFIG : 0);
+        out.writeByte(flags);
+        out.writeByte(commitPolicy != null ? commitPolicy.ordinal() : -1);
+        out.writeInt(commitDelay);
+        out.writeInt(maxValue);
+        out.writeByte(precision != null ? precision.ordinal() : -1);
+        out.writeDouble(value);
+        if (captionSetId != null) {
+            writeString(out, captionSetId);
+        }
+        if (configId != null) {
+            writeString(out, configId);
+        }
+        if (valueCaptions != null) {
+            out.writeInt(valueCaptions.size());
+            for (Map.Entry<Integer, String> entry : valueCaptions.entrySet()) {
+                out.writeInt(entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    @GwtIncompatible
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int flags = in.readByte();
+        animated = (flags & ANIMATED) != 0;
+        cssTransitions = (flags & CSS_TRANSITIONS) != 0;
+        eventDelegation = (flags & EVENT_DELEGATION) != 0;
+        singleElement = (flags & SINGLE_ELEMENT) != 0;
+        int policy = in.readByte();
+        commitPolicy = policy >= 0 ? CommitPolicy.values()[policy] : null;
+        commitDelay = in.readInt();
+        maxValue = in.readInt();
+        int precisionOrdinal = in.readByte();
+        precision = precisionOrdinal >= 0 ? RatingPrecision.values()[precisionOrdinal] : null;
+        value = in.readDouble();
+        captionSetId = (flags & HAS_CAPTION_SET) != 0 ? readString(in) : null;
+        configId = (flags & HAS_CONFIG) != 0 ? readString(in) : null;
+        if ((flags & HAS_VALUE_CAPTIONS) != 0) {
+            int size = in.readInt();
+            valueCaptions = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                valueCaptions.put(in.readInt(), readString(in));
+            }
+        } else {
+            valueCaptions = null;
+        }
+    }
+
+    /**
+     * Writes the string as length-prefixed UTF-8, since
+     * {@link java.io.DataOutput#writeUTF(String)} fails for strings encoding
+     * to more than 64 KB.
+     */
+    @GwtIncompatible
+    private static void writeString(java.io.ObjectOutputStream out, String string) throws java.io.IOException {
+        byte[] bytes = string.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @GwtIncompatible
+    private static String readString(java.io.ObjectInputStream in) throws java.io.IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+    }
 
 }
@@ -1,11 +1,20 @@
 package org.vaadin.teemu.ratingstars.gwt.client;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import com.google.gwt.animation.client.Animation;
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.DivElement;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.DomEvent;
 import com.google.gwt.event.dom.client.KeyCodes;
 import com.google.gwt.event.logical.shared.HasValueChangeHandlers;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
@@ -13,6 +22,7 @@ import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.FocusWidget;
 import com.google.gwt.user.client.ui.HasAnimation;
 import com.google.gwt.user.client.ui.HasValue;
@@ -39,6 +49,19 @@ import com.google.gwt.user.client.ui.HasValue;
  * {@code .v-ratingstars-bar} element behind these star elements is changed
  * according to the current value.
  * 
+ * In the single element mode the number of DOM nodes doesn't depend on the
+ * maximum value. All stars are drawn by one element repeating the background
+ * image of the star and the hovered star is calculated from the pointer
+ * position, measuring the stars once when the pointer enters them and moving
+ * the bar once per animation frame:
+ * 
+ * <pre>
+ *    div.v-ratingstars-wrapper
+ *        div.v-ratingstars
+ *            div.v-ratingstars-star.v-ratingstars-star-strip
+ *            div.v-ratingstars-bar
+ * </pre>
+ * 
  * @author Teemu Pöntelin
  */
 public class RatingStarsWidget extends FocusWidget implements HasAnimation,
@@ -49,13 +72,38 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
     public static final String STAR_CLASSNAME = CLASSNAME + "-star";
     public static final String BAR_CLASSNAME = CLASSNAME + "-bar";
     public static final String WRAPPER_CLASSNAME = CLASSNAME + "-wrapper";
+    public static final String BAR_TRANSITION_CLASSNAME = BAR_CLASSNAME
+            + "-transition";
+    public static final String STRIP_CLASSNAME = STAR_CLASSNAME + "-strip";
 
     private static final int ANIMATION_DURATION_IN_MS = 150;
 
+    /** Events handled by the document-level delegate in the delegated mode. */
+    private static final int DELEGATED_EVENTS = Event.ONCLICK
+            | Event.ONMOUSEOVER | Event.ONMOUSEOUT | Event.ONKEYUP;
+
+    /** Star element cloned for new stars. */
+    private static DivElement starPrototype;
+
     // DOM elements
     private Element barDiv;
     private Element element;
     private Element[] starElements;
+    /** The element drawing all stars in the single element mode. */
+    private Element stripElement;
+
+    /** Captions of the stars by index. */
+    private String[] captions = new String[5];
+
+    /**
+     * Width of a single star in pixels, measured once from the CSS in the
+     * single element mode. Zero until the widget has been measured visible.
+     */
+    private int starWidth;
+
+    /** Current width of the bar as a percentage (0..100). */
+    private byte barWidth;
+    private final BarAnimation barAnimation = new BarAnimation();
 
     /** Currently focused star (by keyboard focus). */
     private int focusIndex = -1;
@@ -64,9 +112,39 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
     private double value;
 
     private boolean animated;
+    private boolean cssTransitions;
     private boolean readonly;
+    private boolean eventDelegation;
+    private boolean eventsSunk;
+    private boolean singleElement;
+    private RatingPrecision precision = RatingPrecision.WHOLE;
+
+    /** Latest pointer position waiting for the next animation frame. */
+    private int pendingClientX;
+    private boolean framePending;
+    /** Left edge and width of the stars, measured when the pointer enters. */
+    private int starsLeft;
+    private int starsWidth;
+
+    /**
+     * Moves the bar to the latest pointer position once per animation frame,
+     * however many mouse events arrived in between.
+     */
+    private final AnimationCallback pointerFrame = new AnimationCallback() {
+        @Override
+        public void execute(double timestamp) {
+            if (framePending) {
+                framePending = false;
+                showPointerValue(getPointerValue(pendingClientX));
+            }
+        }
+    };
+
+    /** Executed when the widget loses focus, in both event modes. */
+    private ScheduledCommand blurCommand;
 
     public RatingStarsWidget() {
+        InlinedStyles.ensureInjected();
         setElement(Document.get().createDivElement());
         setStyleName(WRAPPER_CLASSNAME);
         initDom();
@@ -74,7 +152,9 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
 
     private void initDom() {
         if (element != null) {
-            // Remove previous element.
+            // Remove previous element (rendering mode changed).
+            barAnimation.cancel();
+            setFocusIndex(-1);
             getElement().removeChild(element);
         }
 
@@ -82,31 +162,224 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
         element.setClassName(CLASSNAME);
         getElement().appendChild(element);
 
-        createStarElements();
+        if (singleElement) {
+            starElements = new Element[0];
+            stripElement = Document.get().createDivElement();
+            stripElement.setClassName(STAR_CLASSNAME + " " + STRIP_CLASSNAME);
+            element.appendChild(stripElement);
+            starWidth = 0;
+        } else {
+            stripElement = null;
+            createStarElements();
+        }
 
         barDiv = createBarDiv();
         element.appendChild(barDiv);
+    }
 
-        DOM.sinkEvents(getElement(), Event.ONCLICK | Event.ONMOUSEOVER
-                | Event.ONMOUSEOUT | Event.ONFOCUS | Event.ONBLUR
-                | Event.ONKEYUP);
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        // Connect the events after the connector has applied the state.
+        Scheduler.get().scheduleFinally(connectEventsCommand);
+    }
+
+    private final ScheduledCommand connectEventsCommand = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            if (isAttached()) {
+                connectEvents();
+                if (singleElement && starWidth == 0) {
+                    measureStarWidth(RatingStarsWidget.this);
+                }
+            }
+        }
+    };
+
+    /** Delay between the measurements of hidden widgets in milliseconds. */
+    private static final int HIDDEN_MEASUREMENT_DELAY = 250;
+
+    /** Single element widgets waiting for their star width to be measured. */
+    private static final List<RatingStarsWidget> pendingMeasurements = new ArrayList<RatingStarsWidget>();
+    private static boolean measurementScheduled;
+
+    private static final ScheduledCommand measureCommand = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            measurementScheduled = false;
+            // Do all reads before the writes to avoid repeated reflows.
+            for (RatingStarsWidget widget : pendingMeasurements) {
+                if (widget.stripElement != null && widget.isAttached()) {
+                    widget.starWidth = widget.stripElement.getOffsetWidth();
+                    DomCounters.layoutReads(1);
+                }
+            }
+            Iterator<RatingStarsWidget> iterator = pendingMeasurements
+                    .iterator();
+            while (iterator.hasNext()) {
+                RatingStarsWidget widget = iterator.next();
+                if (widget.starWidth > 0) {
+                    widget.updateStripWidth();
+                    iterator.remove();
+                } else if (widget.stripElement == null
+                        || !widget.isAttached()) {
+                    iterator.remove();
+                }
+            }
+            if (!pendingMeasurements.isEmpty()) {
+                // Hidden widgets measure zero, try again until they're shown.
+                hiddenMeasurementTimer.schedule(HIDDEN_MEASUREMENT_DELAY);
+            }
+        }
+    };
+
+    private static final Timer hiddenMeasurementTimer = new Timer() {
+        @Override
+        public void run() {
+            if (!measurementScheduled) {
+                measureCommand.execute();
+            }
+        }
+    };
+
+    /**
+     * Measures the width of a single star from the CSS of the strip element
+     * before its width is set according to the maximum value. The width is
+     * measured only once per strip element, so the width set by
+     * {@link #updateStripWidth()} is never measured as the width of a star.
+     */
+    private static void measureStarWidth(RatingStarsWidget widget) {
+        if (!measurementScheduled) {
+            measurementScheduled = true;
+            Scheduler.get().scheduleFinally(measureCommand);
+        }
+        if (!pendingMeasurements.contains(widget)) {
+            pendingMeasurements.add(widget);
+        }
+    }
+
+    private void updateStripWidth() {
+        if (stripElement != null && starWidth > 0) {
+            stripElement.getStyle().setWidth(starWidth * maxValue, Unit.PX);
+        }
+    }
+
+    /**
+     * Sets whether all stars should be drawn with a single element instead of
+     * one element per star. Recommended for large maximum values.
+     * 
+     * @param enable
+     */
+    public void setSingleElementEnabled(boolean enable) {
+        if (this.singleElement != enable) {
+            this.singleElement = enable;
+            initDom(); // Recreate the DOM.
+            if (isAttached()) {
+                connectEvents();
+                if (singleElement) {
+                    // the new strip element is measured again
+                    measureStarWidth(this);
+                }
+            }
+        }
+    }
+
+    private int getConnectedEvents() {
+        return singleElement || precision != RatingPrecision.WHOLE
+                ? DELEGATED_EVENTS | Event.ONMOUSEMOVE
+                : DELEGATED_EVENTS;
+    }
+
+    /**
+     * Either sinks the events of this widget or registers it to the
+     * page-level {@link RatingStarsEventDelegate} depending on the
+     * <code>eventDelegation</code> property.
+     */
+    private void connectEvents() {
+        if (eventDelegation) {
+            if (eventsSunk) {
+                unsinkEvents(DELEGATED_EVENTS | Event.ONMOUSEMOVE);
+                eventsSunk = false;
+            }
+            RatingStarsEventDelegate.register(this, getConnectedEvents());
+        } else {
+            RatingStarsEventDelegate.unregister(this);
+            if ((getConnectedEvents() & Event.ONMOUSEMOVE) == 0) {
+                unsinkEvents(Event.ONMOUSEMOVE);
+            }
+            sinkEvents(getConnectedEvents() | Event.ONFOCUS | Event.ONBLUR);
+            eventsSunk = true;
+        }
+    }
+
+    /**
+     * Sets the fractions of a star the user can give. With the half and tenth
+     * precisions the bar follows the pointer, updated at most once per
+     * animation frame.
+     * 
+     * @param precision
+     */
+    public void setPrecision(RatingPrecision precision) {
+        if (this.precision != precision) {
+            this.precision = precision;
+            framePending = false;
+            starsWidth = 0;
+            if (isAttached()) {
+                connectEvents();
+            }
+        }
+    }
+
+    /**
+     * Sets whether this widget should listen to the browser events through a
+     * single document-level handler shared by all RatingStars widgets instead
+     * of sinking the events of its own element. In the delegated mode GWT
+     * focus and blur handlers of this widget are not notified.
+     * 
+     * @param enable
+     */
+    public void setEventDelegationEnabled(boolean enable) {
+        if (this.eventDelegation != enable) {
+            this.eventDelegation = enable;
+            if (isAttached()) {
+                connectEvents();
+            }
+        }
     }
 
     void updateValueCaptions(Map<Integer, String> valueCaptions) {
-        for (Element starElement : starElements) {
-            int rating = starElement.getPropertyInt("rating");
-            String caption = valueCaptions.get(rating);
+        for (int i = 0; i < maxValue; i++) {
+            String caption = valueCaptions.get(i + 1);
             if (caption != null) {
-                starElement.setPropertyString("caption", caption);
+                captions[i] = caption;
 
-                if (StarCaptionUtil.isVisibleForStarElement(starElement)) {
+                if (i == focusIndex
+                        && (singleElement ? StarCaptionUtil.isVisibleForStar(
+                                stripElement, i) : StarCaptionUtil
+                                .isVisibleForStarElement(starElements[i]))) {
                     // update currently visible caption
-                    StarCaptionUtil.showAroundElement(starElement, caption);
+                    showCaption(i);
                 }
             }
         }
     }
 
+    void clearValueCaptions() {
+        for (int i = 0; i < captions.length; i++) {
+            captions[i] = null;
+        }
+    }
+
+    private void showCaption(int index) {
+        if (singleElement) {
+            StarCaptionUtil.showAroundStar(stripElement, index, maxValue,
+                    captions[index]);
+        } else {
+            StarCaptionUtil.showAroundElement(starElements[index],
+                    captions[index]);
+        }
+    }
+
     private void createStarElements() {
         starElements = new Element[maxValue];
         for (int i = 0; i < maxValue; i++) {
@@ -124,20 +397,51 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
 
         super.onBrowserEvent(event);
 
-        Element target = Element.as(event.getEventTarget());
-        switch (DOM.eventGetType(event)) {
+        if (!eventDelegation) {
+            handleEvent(DOM.eventGetType(event), event);
+        }
+    }
+
+    /**
+     * Called by the {@link RatingStarsEventDelegate} for the events targeted
+     * to this widget in the delegated mode.
+     * 
+     * @param type
+     *            type of the event as one of the {@link Event} constants
+     */
+    void onDelegatedEvent(int type, Event event) {
+        if (!isEnabled() || readonly) {
+            return; // Do nothing if disabled or read-only.
+        }
+
+        DomEvent.fireNativeEvent(event, this, getElement());
+        handleEvent(type, event);
+    }
+
+    private void handleEvent(int type, Event event) {
+        if (precision != RatingPrecision.WHOLE || singleElement) {
+            handleFractionalEvent(type, event);
+        } else {
+            handleWholeEvent(type, event);
+        }
+    }
+
+    private void handleWholeEvent(int type, Event event) {
+        switch (type) {
         case Event.ONCLICK:
             // update value
-            setValueFromElement(target);
+            int clickedRating = getRating(event);
+            if (clickedRating > 0) {
+                setValue((double) clickedRating, true);
+            }
             break;
         case Event.ONMOUSEOVER:
+        case Event.ONMOUSEMOVE:
             // animate
-            if (target.getClassName().contains(STAR_CLASSNAME)) {
-                int rating = target.getPropertyInt("rating");
+            int rating = getRating(event);
+            if (rating > 0 && rating - 1 != focusIndex) {
                 setFocusIndex(rating - 1);
                 setFocus(true);
-                StarCaptionUtil.showAroundElement(target,
-                        target.getPropertyString("caption"));
             }
             break;
         case Event.ONMOUSEOUT:
@@ -162,6 +466,9 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
             setFocusIndex(-1);
             setBarWidth(calcBarWidth(value));
             StarCaptionUtil.hide();
+            if (blurCommand != null) {
+                blurCommand.execute();
+            }
             break;
         case Event.ONKEYUP:
             handleKeyUp(event);
@@ -169,20 +476,144 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
         }
     }
 
+    /**
+     * Handles the events in the half and tenth precision modes and in the
+     * single element mode, where the value follows the pointer instead of the
+     * hovered star element.
+     */
+    private void handleFractionalEvent(int type, Event event) {
+        switch (type) {
+        case Event.ONCLICK:
+            measureStars();
+            framePending = false;
+            int clientX = event.getClientX();
+            if (clientX < starsLeft || clientX > starsLeft + starsWidth) {
+                return; // clicked the padding around the stars
+            }
+            double clickedValue = getPointerValue(clientX);
+            if (clickedValue > 0) {
+                setValue(clickedValue, true);
+            }
+            break;
+        case Event.ONMOUSEOVER:
+            if (starsWidth <= 0) {
+                measureStars();
+                setFocus(true);
+            }
+            movePointer(event.getClientX());
+            break;
+        case Event.ONMOUSEMOVE:
+            movePointer(event.getClientX());
+            break;
+        case Event.ONMOUSEOUT:
+            if (Element.is(event.getRelatedEventTarget())
+                    && element.isOrHasChild(Element.as(event
+                            .getRelatedEventTarget()))) {
+                return; // moving between the stars
+            }
+            framePending = false;
+            starsWidth = 0;
+            handleWholeEvent(type, event);
+            break;
+        default:
+            // keyboard, focus and blur work as with whole stars
+            handleWholeEvent(type, event);
+        }
+    }
+
+    /**
+     * Shows the value at the given pointer position in the next animation
+     * frame, replacing any position still waiting for it.
+     */
+    private void movePointer(int clientX) {
+        pendingClientX = clientX;
+        if (!framePending) {
+            framePending = true;
+            AnimationScheduler.get().requestAnimationFrame(pointerFrame);
+        }
+    }
+
+    /**
+     * Measures the position and width of the stars. Called when the pointer
+     * enters the stars, so the mouse moves only write the bar width.
+     */
+    private void measureStars() {
+        Element stars = singleElement && stripElement != null ? stripElement
+                : element;
+        starsLeft = stars.getAbsoluteLeft() - Document.get().getScrollLeft();
+        starsWidth = stars.getOffsetWidth();
+        DomCounters.layoutReads(3);
+    }
+
+    /**
+     * Resolves the value at the given pointer position rounded up to the
+     * precision.
+     * 
+     * @return the value or zero if the stars have no width
+     */
+    private double getPointerValue(int clientX) {
+        if (starsWidth <= 0) {
+            return 0;
+        }
+        double value = precision.roundUp((double) (clientX - starsLeft)
+                * maxValue / starsWidth);
+        return Math.max(1.0 / precision.getSteps(), Math.min(maxValue, value));
+    }
+
+    /**
+     * Moves the bar directly to the given value without an animation and
+     * shows the caption of the star containing it.
+     */
+    private void showPointerValue(double pointerValue) {
+        if (pointerValue <= 0) {
+            return;
+        }
+        int index = (int) Math.ceil(pointerValue) - 1;
+        if (index != focusIndex) {
+            moveFocus(index);
+            showCaption(index);
+        }
+        barAnimation.cancel();
+        byte width = calcBarWidth(pointerValue);
+        if (barWidth != width) {
+            updateBarWidth(width);
+        }
+    }
+
+    /**
+     * Resolves the rating of the star element targeted by the given mouse
+     * event.
+     * 
+     * @return the rating or zero if the event didn't target a star
+     */
+    private int getRating(Event event) {
+        // only star elements have the rating property
+        return Element.as(event.getEventTarget()).getPropertyInt("rating");
+    }
+
     private void setFocusIndex(int index) {
+        moveFocus(index);
+        if (focusIndex >= 0 && focusIndex < maxValue) {
+            setBarWidth(calcBarWidth(focusIndex + 1));
+            showCaption(focusIndex);
+        }
+    }
+
+    /**
+     * Moves the focus class to the star of the given index.
+     */
+    private void moveFocus(int index) {
         // remove old focus class
         if (focusIndex >= 0 && focusIndex < starElements.length) {
             starElements[focusIndex].removeClassName(STAR_CLASSNAME + "-focus");
         }
         // update focusIndex and add class
         focusIndex = index;
-        if (focusIndex >= 0 && focusIndex < starElements.length) {
-            Element focusedStar = starElements[focusIndex];
-
-            focusedStar.addClassName(STAR_CLASSNAME + "-focus");
-            setBarWidth(calcBarWidth(focusedStar.getPropertyInt("rating")));
-            StarCaptionUtil.showAroundElement(focusedStar,
-                    focusedStar.getPropertyString("caption"));
+        if (focusIndex >= 0 && focusIndex < maxValue) {
+            if (focusIndex < starElements.length) {
+                starElements[focusIndex].addClassName(STAR_CLASSNAME
+                        + "-focus");
+            }
         }
     }
 
@@ -190,25 +621,19 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
         int newFocusIndex = focusIndex + delta;
 
         // check for boundaries
-        if (newFocusIndex >= 0 && newFocusIndex < starElements.length) {
+        if (newFocusIndex >= 0 && newFocusIndex < maxValue) {
             setFocusIndex(newFocusIndex);
         }
     }
 
-    private void setValueFromElement(Element target) {
-        if (target.getClassName().contains(STAR_CLASSNAME)) {
-            int ratingValue = target.getPropertyInt("rating");
-            setValue((double) ratingValue, true);
-        }
-    }
-
     public void handleKeyUp(Event event) {
         if (event.getKeyCode() == KeyCodes.KEY_RIGHT) {
             changeFocusIndex(+1);
         } else if (event.getKeyCode() == KeyCodes.KEY_LEFT) {
             changeFocusIndex(-1);
-        } else if (event.getKeyCode() == KeyCodes.KEY_ENTER) {
-            setValueFromElement(starElements[focusIndex]);
+        } else if (event.getKeyCode() == KeyCodes.KEY_ENTER
+                && focusIndex >= 0) {
+            setValue((double) (focusIndex + 1), true);
         }
     }
 
@@ -221,44 +646,63 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
     private Element createBarDiv() {
         DivElement barDiv = Document.get().createDivElement();
         barDiv.setClassName(BAR_CLASSNAME);
-        barDiv.getStyle().setProperty("width", calcBarWidth(value) + "%");
+        if (animated && cssTransitions) {
+            barDiv.addClassName(BAR_TRANSITION_CLASSNAME);
+        }
+        barWidth = calcBarWidth(value);
+        barDiv.getStyle().setProperty("width", barWidth + "%");
         return barDiv;
     }
 
     /**
      * Sets the width of the bar div instantly or via animated progress
-     * depending on the value of the <code>animated</code> property.
+     * depending on the value of the <code>animated</code> property. A running
+     * animation is retargeted instead of starting another one.
      */
-    private void setBarWidth(final byte widthPercentage) {
+    private void setBarWidth(byte widthPercentage) {
         if (barDiv == null) {
             return;
         }
 
-        final byte currentWidthPercentage = getCurrentBarWidth();
-        if (currentWidthPercentage != widthPercentage) {
-            if (!isAnimationEnabled()) {
-                barDiv.getStyle().setProperty("width", widthPercentage + "%");
-            } else {
-                Animation animation = new Animation() {
-                    @Override
-                    protected void onUpdate(double progress) {
-                        byte newWidth = (byte) (currentWidthPercentage + (progress * (widthPercentage - currentWidthPercentage)));
-                        barDiv.getStyle().setProperty("width", newWidth + "%");
-                    }
-                };
-                animation.run(ANIMATION_DURATION_IN_MS);
-            }
+        if (isAnimationEnabled() && !cssTransitions) {
+            barAnimation.retarget(widthPercentage);
+        } else if (barWidth != widthPercentage) {
+            barAnimation.cancel();
+            updateBarWidth(widthPercentage);
         }
     }
 
-    private byte getCurrentBarWidth() {
-        String currentWidth = barDiv.getStyle().getProperty("width");
-        byte currentWidthPercentage = 0;
-        if (currentWidth != null && currentWidth.length() > 0) {
-            currentWidthPercentage = Byte.valueOf(currentWidth.substring(0,
-                    currentWidth.length() - 1));
+    private void updateBarWidth(byte widthPercentage) {
+        barWidth = widthPercentage;
+        barDiv.getStyle().setProperty("width", widthPercentage + "%");
+    }
+
+    /**
+     * The single animation of this widget interpolating the bar width from its
+     * current width towards the latest target width.
+     */
+    private class BarAnimation extends Animation {
+        private byte fromWidth;
+        private byte toWidth;
+
+        void retarget(byte targetWidth) {
+            if (isRunning() ? toWidth == targetWidth : barWidth == targetWidth) {
+                return; // already there or on the way
+            }
+            fromWidth = barWidth;
+            toWidth = targetWidth;
+            run(ANIMATION_DURATION_IN_MS);
+        }
+
+        @Override
+        protected void onUpdate(double progress) {
+            updateBarWidth((byte) (fromWidth + (progress * (toWidth - fromWidth))));
+        }
+
+        @Override
+        protected void onCancel() {
+            // stay at the current width instead of jumping to the old target
         }
-        return currentWidthPercentage;
     }
 
     /**
@@ -268,20 +712,34 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
      * @return width percentage (0..100)
      */
     private byte calcBarWidth(double forValue) {
+        return calcBarWidth(forValue, maxValue);
+    }
+
+    /**
+     * Calculates the bar width for the given <code>forValue</code> as a
+     * percentage of the given <code>maxValue</code>.
+     * 
+     * @return width percentage (0..100)
+     */
+    static byte calcBarWidth(double forValue, int maxValue) {
         return (byte) (forValue * 100 / maxValue);
     }
 
     /**
-     * Creates a DivElement representing a single star. Given
-     * <code>rating</code> value is set as an int property for the div.
+     * Creates a DivElement representing a single star by cloning a prototype
+     * star. Given <code>rating</code> value is set as an int property for the
+     * div.
      * 
      * @param rating
      *            rating value of this star.
      * @return a DivElement representing a single star.
      */
-    private DivElement createStarDiv(int rating) {
-        DivElement starDiv = Document.get().createDivElement();
-        starDiv.setClassName(STAR_CLASSNAME);
+    static DivElement createStarDiv(int rating) {
+        if (starPrototype == null) {
+            starPrototype = Document.get().createDivElement();
+            starPrototype.setClassName(STAR_CLASSNAME);
+        }
+        DivElement starDiv = starPrototype.cloneNode(false).cast();
         starDiv.setPropertyInt("rating", rating);
         return starDiv;
     }
@@ -294,12 +752,69 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
     @Override
     public void setAnimationEnabled(boolean enable) {
         this.animated = enable;
+        updateBarTransition();
+    }
+
+    /**
+     * Sets whether animated transitions should be done by the browser with a
+     * CSS transition (see {@link #BAR_TRANSITION_CLASSNAME}) instead of
+     * updating the width of the bar from script on each animation frame.
+     * 
+     * @param enable
+     */
+    public void setCssTransitionsEnabled(boolean enable) {
+        this.cssTransitions = enable;
+        updateBarTransition();
     }
 
+    private void updateBarTransition() {
+        if (barDiv == null) {
+            return;
+        }
+        if (animated && cssTransitions) {
+            barAnimation.cancel();
+            barDiv.addClassName(BAR_TRANSITION_CLASSNAME);
+        } else {
+            barDiv.removeClassName(BAR_TRANSITION_CLASSNAME);
+        }
+    }
+
+    /**
+     * Sets the maximum value by adding or removing only the star elements that
+     * differ. The rest of the DOM as well as the hover and focus state are
+     * kept.
+     * 
+     * @param maxValue
+     */
     public void setMaxValue(int maxValue) {
         if (this.maxValue != maxValue) {
+            if (!singleElement) {
+                Element[] oldStarElements = starElements;
+                starElements = new Element[maxValue];
+                for (int i = 0; i < Math.max(maxValue, this.maxValue); i++) {
+                    if (i >= maxValue) {
+                        element.removeChild(oldStarElements[i]);
+                    } else if (i < this.maxValue) {
+                        starElements[i] = oldStarElements[i];
+                    } else {
+                        starElements[i] = createStarDiv(i + 1);
+                        element.insertBefore(starElements[i], barDiv);
+                    }
+                }
+            }
+            String[] oldCaptions = captions;
+            captions = new String[maxValue];
+            for (int i = 0; i < Math.min(maxValue, oldCaptions.length); i++) {
+                captions[i] = oldCaptions[i];
+            }
             this.maxValue = maxValue;
-            initDom(); // Recreate the DOM.
+            updateStripWidth();
+
+            if (focusIndex >= maxValue) {
+                setFocusIndex(-1);
+                StarCaptionUtil.hide();
+            }
+            setBarWidth(calcBarWidth(focusIndex >= 0 ? focusIndex + 1 : value));
         }
     }
 
@@ -310,6 +825,17 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
         }
     }
 
+    /**
+     * Sets the command executed when this widget loses focus. Unlike blur
+     * handlers, the command is executed also in the delegated event mode.
+     * 
+     * @param blurCommand
+     *            the command or <code>null</code>
+     */
+    void setBlurCommand(ScheduledCommand blurCommand) {
+        this.blurCommand = blurCommand;
+    }
+
     public void setReadOnly(boolean readonly) {
         if (this.readonly != readonly) {
             this.readonly = readonly;
@@ -332,6 +858,13 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
         setValue(value, false);
     }
 
+    /**
+     * Sets the value without firing events, delegated from the shared state.
+     */
+    public void setValue(double value) {
+        setValue(Double.valueOf(value), false);
+    }
+
     @Override
     public void setValue(Double value, boolean fireEvents) {
         // Null not supported -> convert to zero.
@@ -339,7 +872,10 @@ public class RatingStarsWidget extends FocusWidget implements HasAnimation,
             value = 0.0;
         }
 
-        ValueChangeEvent.fireIfNotEqual(this, this.value, value);
+        Double oldValue = this.value;
         internalSetValue(value);
+        if (fireEvents) {
+            ValueChangeEvent.fireIfNotEqual(this, oldValue, value);
+        }
     }
 }
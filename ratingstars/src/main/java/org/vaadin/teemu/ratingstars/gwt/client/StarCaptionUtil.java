@@ -1,77 +1,149 @@
 package org.vaadin.teemu.ratingstars.gwt.client;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Style;
 
+/**
+ * Shows the caption of a star below the star element. There's only one caption
+ * element per page. Showing the caption is deferred to the next animation frame
+ * where all layout reads are done before the writes, so moving across the
+ * stars forces at most one reflow per frame.
+ */
 abstract class StarCaptionUtil {
 
     public static final String STAR_CAPTION_ID = RatingStarsWidget.STAR_CLASSNAME
             + "-caption";
 
+    private static Element starCaption;
+    private static Element starCaptionSpan;
+
+    /** Star the caption is shown (or about to be shown) for. */
+    private static Element starElement;
+    /** Part of the star element the caption is for (single element mode). */
+    private static int starPart;
+    private static int starParts = 1;
+    private static String caption;
+    private static String shownCaption;
+    private static boolean visible;
+    private static boolean displayed;
+
+    private static AnimationHandle frameHandle;
+    private static final AnimationCallback positionCallback = new AnimationCallback() {
+        @Override
+        public void execute(double timestamp) {
+            frameHandle = null;
+            positionCaption();
+        }
+    };
+
     private static Element getStarCaption() {
-        Document doc = Document.get();
-        Element starCaption = doc.getElementById(STAR_CAPTION_ID);
         if (starCaption == null) {
-            // caption element doesn't yet exist -> create
-            starCaption = doc.createDivElement();
+            Document doc = Document.get();
+            starCaption = doc.getElementById(STAR_CAPTION_ID);
+            if (starCaption == null) {
+                // caption element doesn't yet exist -> create
+                starCaption = doc.createDivElement();
 
-            Element starCaptionDecoration = doc.createDivElement();
-            starCaption.appendChild(starCaptionDecoration);
+                Element starCaptionDecoration = doc.createDivElement();
+                starCaption.appendChild(starCaptionDecoration);
 
-            // span for the actual caption text
-            Element starCaptionSpan = doc.createSpanElement();
+                // span for the actual caption text
+                starCaptionSpan = doc.createSpanElement();
 
-            starCaption.setId(STAR_CAPTION_ID);
-            starCaption.getStyle().setProperty("display", "none");
-            starCaption.appendChild(starCaptionSpan);
-            doc.getBody().appendChild(starCaption);
+                starCaption.setId(STAR_CAPTION_ID);
+                starCaption.getStyle().setProperty("display", "none");
+                starCaption.appendChild(starCaptionSpan);
+                doc.getBody().appendChild(starCaption);
+            } else {
+                starCaptionSpan = starCaption.getElementsByTagName("span")
+                        .getItem(0);
+            }
         }
         return starCaption;
     }
 
     public static void showAroundElement(Element target, String caption) {
+        showAroundStar(target, 0, 1, caption);
+    }
+
+    /**
+     * Shows the caption below the given part of the target element when the
+     * target is divided horizontally into equal-sized parts.
+     */
+    public static void showAroundStar(Element target, int part, int parts,
+            String caption) {
         if (caption != null) {
-            Element starCaption = getStarCaption();
+            StarCaptionUtil.starElement = target;
+            StarCaptionUtil.starPart = part;
+            StarCaptionUtil.starParts = parts;
+            StarCaptionUtil.caption = caption;
+            visible = true;
+            if (frameHandle == null) {
+                frameHandle = AnimationScheduler.get().requestAnimationFrame(
+                        positionCallback);
+            }
+        } else {
+            hide();
+        }
+    }
 
-            // set the text and display element (to get width for calculations)
-            starCaption.getElementsByTagName("span").getItem(0)
-                    .setInnerText(caption);
-            starCaption.setPropertyObject("starElement", target);
-            Style starCaptionStyle = starCaption.getStyle();
-            starCaptionStyle.setProperty("display", "block");
+    private static void positionCaption() {
+        if (!visible) {
+            return;
+        }
+        Element starCaption = getStarCaption();
 
-            // calculate position
-            int x = target.getAbsoluteLeft();
-            x += (target.getClientWidth() / 2);
-            x -= (starCaption.getClientWidth() / 2);
-            int y = target.getAbsoluteTop();
-            y += target.getClientHeight();
+        // read the layout first (the caption is centered by its CSS)
+        int x = starElement.getAbsoluteLeft();
+        x += (starElement.getClientWidth() * (2 * starPart + 1) / (2 * starParts));
+        int y = starElement.getAbsoluteTop();
+        y += starElement.getClientHeight();
+        DomCounters.layoutReads(4);
 
-            // position the element
-            starCaptionStyle.setProperty("left", x + "px");
-            starCaptionStyle.setProperty("top", y + "px");
-        } else {
-            hide();
+        // then do all the writes
+        if (!caption.equals(shownCaption)) {
+            starCaptionSpan.setInnerText(caption);
+            shownCaption = caption;
+        }
+        Style starCaptionStyle = starCaption.getStyle();
+        if (!displayed) {
+            starCaptionStyle.setProperty("display", "block");
+            displayed = true;
         }
+        starCaptionStyle.setProperty("left", x + "px");
+        starCaptionStyle.setProperty("top", y + "px");
     }
 
     public static boolean isVisibleForStarElement(Element element) {
-        return isVisible()
-                && getStarCaption().getPropertyObject("starElement").equals(
-                        element);
+        return isVisibleForStar(element, 0);
+    }
+
+    public static boolean isVisibleForStar(Element element, int part) {
+        return visible && element.equals(starElement) && part == starPart;
     }
 
     public static boolean isVisible() {
-        return !("none".equals(getStarCaption().getStyle().getProperty(
-                "display")));
+        return visible;
     }
 
     public static void hide() {
-        Style starCaptionStyle = getStarCaption().getStyle();
-        starCaptionStyle.setProperty("display", "none");
-        starCaptionStyle.setProperty("left", "-100px");
-        starCaptionStyle.setProperty("top", "-100px");
+        visible = false;
+        starElement = null;
+        if (frameHandle != null) {
+            frameHandle.cancel();
+            frameHandle = null;
+        }
+        if (displayed) {
+            Style starCaptionStyle = getStarCaption().getStyle();
+            starCaptionStyle.setProperty("display", "none");
+            starCaptionStyle.setProperty("left", "-100px");
+            starCaptionStyle.setProperty("top", "-100px");
+            displayed = false;
+        }
     }
 
 }
@@ -0,0 +1,294 @@
+package org.vaadin.teemu.ratingstars.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.UI;
+
+/**
+ * Instrumentation of the RatingStars components of the application: the
+ * number of values received from the clients, the time taken by the value
+ * change listeners, the size of the states sent to the clients and the
+ * number of components attached to each UI.
+ * <p>
+ * The instrumentation is disabled by default. When disabled the components
+ * only read a volatile flag, so the overhead is close to zero. The metrics
+ * can be read through JMX after calling {@link #registerMBean()} or bridged
+ * to another registry with a {@link RatingStarsMetricsListener}.
+ */
+public final class RatingStarsMetrics implements RatingStarsMetricsMXBean {
+
+    /** Name of the MBean registered by {@link #registerMBean()}. */
+    public static final String OBJECT_NAME = "org.vaadin.teemu.ratingstars:type=RatingStarsMetrics";
+
+    /** Bucket <code>i</code> counts durations below <code>2^i</code> nanoseconds. */
+    private static final int BUCKETS = 48;
+
+    private static final RatingStarsMetrics INSTANCE = new RatingStarsMetrics();
+
+    private static volatile boolean enabled;
+
+    private final List<RatingStarsMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder rpcCount = new LongAdder();
+    private final LongAdder listenerCount = new LongAdder();
+    private final LongAdder listenerNanos = new LongAdder();
+    private final AtomicLong listenerMaxNanos = new AtomicLong();
+    private final LongAdder[] listenerHistogram = new LongAdder[BUCKETS];
+    private final LongAdder stateSyncCount = new LongAdder();
+    private final LongAdder stateBytes = new LongAdder();
+    private final LongAdder liveInstances = new LongAdder();
+    /** Weakly keyed, so a UI never detached doesn't stay in the map. */
+    private final Map<UI, AtomicInteger> uiInstances = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private RatingStarsMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            listenerHistogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return the metrics of the application
+     */
+    public static RatingStarsMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return <code>true</code> if the components should record the metrics
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        RatingStarsMetrics.enabled = enabled;
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server as
+     * {@value #OBJECT_NAME} unless already registered.
+     *
+     * @throws JMException
+     *             if the registration fails
+     */
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(this, name);
+        }
+    }
+
+    /**
+     * Adds a listener receiving the measurements. Measurements are made only
+     * while the metrics are enabled.
+     *
+     * @param listener
+     * @return a registration handle to remove the listener
+     */
+    public Registration addListener(RatingStarsMetricsListener listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Records a value received from a client.
+     */
+    public void rpcReceived() {
+        rpcCount.increment();
+        for (RatingStarsMetricsListener listener : listeners) {
+            listener.rpcReceived();
+        }
+    }
+
+    /**
+     * Records the time taken by the value change listeners of a component.
+     *
+     * @param nanos
+     * @param async
+     *            <code>true</code> for the asynchronous listeners
+     */
+    public void listenersExecuted(long nanos, boolean async) {
+        listenerCount.increment();
+        listenerNanos.add(nanos);
+        listenerHistogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)))].increment();
+        long max;
+        while (nanos > (max = listenerMaxNanos.get()) && !listenerMaxNanos.compareAndSet(max, nanos)) {
+            // retry
+        }
+        for (RatingStarsMetricsListener listener : listeners) {
+            listener.listenersExecuted(nanos, async);
+        }
+    }
+
+    /**
+     * Records a state sent to a client.
+     *
+     * @param bytes
+     *            length of the state as JSON
+     */
+    public void stateSent(int bytes) {
+        stateSyncCount.increment();
+        stateBytes.add(bytes);
+        for (RatingStarsMetricsListener listener : listeners) {
+            listener.stateSent(bytes);
+        }
+    }
+
+    /**
+     * Records a component attached to the given UI.
+     *
+     * @param ui
+     */
+    public void instanceAttached(UI ui) {
+        liveInstances.increment();
+        int count = uiInstances.computeIfAbsent(ui, key -> new AtomicInteger()).incrementAndGet();
+        for (RatingStarsMetricsListener listener : listeners) {
+            listener.instancesChanged(count);
+        }
+    }
+
+    /**
+     * Records a component detached from the given UI. Should be called for
+     * every recorded attach, also if the metrics have been disabled since.
+     *
+     * @param ui
+     */
+    public void instanceDetached(UI ui) {
+        AtomicInteger counter = uiInstances.get(ui);
+        if (counter == null) {
+            return; // not recorded as attached to this UI
+        }
+        liveInstances.decrement();
+        int count = counter.decrementAndGet();
+        if (count <= 0) {
+            uiInstances.remove(ui, counter);
+        }
+        for (RatingStarsMetricsListener listener : listeners) {
+            listener.instancesChanged(count);
+        }
+    }
+
+    @Override
+    public long getRpcCount() {
+        return rpcCount.sum();
+    }
+
+    @Override
+    public long getListenerCount() {
+        return listenerCount.sum();
+    }
+
+    @Override
+    public double getListenerMeanMillis() {
+        long count = listenerCount.sum();
+        return count > 0 ? listenerNanos.sum() / 1e6 / count : 0.0;
+    }
+
+    @Override
+    public double getListenerMedianMillis() {
+        return getListenerPercentileMillis(0.5);
+    }
+
+    @Override
+    public double getListener99thPercentileMillis() {
+        return getListenerPercentileMillis(0.99);
+    }
+
+    /**
+     * Returns the upper bound of the histogram bucket containing the given
+     * percentile.
+     */
+    private double getListenerPercentileMillis(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = listenerHistogram[i].sum();
+            total += counts[i];
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return (1L << i) / 1e6;
+            }
+        }
+        return 0.0;
+    }
+
+    @Override
+    public double getListenerMaxMillis() {
+        return listenerMaxNanos.get() / 1e6;
+    }
+
+    @Override
+    public long getStateSyncCount() {
+        return stateSyncCount.sum();
+    }
+
+    @Override
+    public long getStateBytes() {
+        return stateBytes.sum();
+    }
+
+    @Override
+    public double getStateMeanBytes() {
+        long count = stateSyncCount.sum();
+        return count > 0 ? (double) stateBytes.sum() / count : 0.0;
+    }
+
+    @Override
+    public long getLiveInstances() {
+        return liveInstances.sum();
+    }
+
+    @Override
+    public int getUiCount() {
+        return uiInstances.size();
+    }
+
+    @Override
+    public int getMaxInstancesPerUi() {
+        int max = 0;
+        synchronized (uiInstances) {
+            for (AtomicInteger count : uiInstances.values()) {
+                max = Math.max(max, count.get());
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public void reset() {
+        rpcCount.reset();
+        listenerCount.reset();
+        listenerNanos.reset();
+        listenerMaxNanos.set(0);
+        for (LongAdder bucket : listenerHistogram) {
+            bucket.reset();
+        }
+        stateSyncCount.reset();
+        stateBytes.reset();
+    }
+
+}
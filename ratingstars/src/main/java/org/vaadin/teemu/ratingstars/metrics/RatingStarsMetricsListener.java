@@ -0,0 +1,48 @@
+package org.vaadin.teemu.ratingstars.metrics;
+
+/**
+ * Listener receiving the measurements of {@link RatingStarsMetrics} as they
+ * are made, for bridging them to an external metrics registry. Called on the
+ * thread making the measurement, so implementations should return quickly.
+ * All methods do nothing by default.
+ */
+public interface RatingStarsMetricsListener {
+
+    /**
+     * Called when a value is received from the client.
+     */
+    default void rpcReceived() {
+    }
+
+    /**
+     * Called after the value change listeners of a component have been
+     * executed.
+     *
+     * @param nanos
+     *            time taken by the listeners in nanoseconds
+     * @param async
+     *            <code>true</code> for the asynchronous listeners
+     */
+    default void listenersExecuted(long nanos, boolean async) {
+    }
+
+    /**
+     * Called when the state of a component is sent to the client.
+     *
+     * @param bytes
+     *            length of the sent state as JSON
+     */
+    default void stateSent(int bytes) {
+    }
+
+    /**
+     * Called when the number of RatingStars components attached to a UI
+     * changes.
+     *
+     * @param uiInstances
+     *            number of components attached to the UI
+     */
+    default void instancesChanged(int uiInstances) {
+    }
+
+}
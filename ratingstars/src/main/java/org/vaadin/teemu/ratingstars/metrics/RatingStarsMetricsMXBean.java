@@ -0,0 +1,81 @@
+package org.vaadin.teemu.ratingstars.metrics;
+
+/**
+ * Management interface of {@link RatingStarsMetrics} registered to the
+ * platform MBean server by {@link RatingStarsMetrics#registerMBean()}.
+ */
+public interface RatingStarsMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return number of values received from the clients
+     */
+    long getRpcCount();
+
+    /**
+     * @return number of times the value change listeners were executed
+     */
+    long getListenerCount();
+
+    /**
+     * @return mean time taken by the listeners in milliseconds
+     */
+    double getListenerMeanMillis();
+
+    /**
+     * @return median time taken by the listeners in milliseconds, accurate to
+     *         a power of two
+     */
+    double getListenerMedianMillis();
+
+    /**
+     * @return 99th percentile of the time taken by the listeners in
+     *         milliseconds, accurate to a power of two
+     */
+    double getListener99thPercentileMillis();
+
+    /**
+     * @return maximum time taken by the listeners in milliseconds
+     */
+    double getListenerMaxMillis();
+
+    /**
+     * @return number of times a state was sent to the clients
+     */
+    long getStateSyncCount();
+
+    /**
+     * @return total length of the sent states as JSON
+     */
+    long getStateBytes();
+
+    /**
+     * @return mean length of a sent state as JSON
+     */
+    double getStateMeanBytes();
+
+    /**
+     * @return number of RatingStars components attached to a UI
+     */
+    long getLiveInstances();
+
+    /**
+     * @return number of UIs with RatingStars components attached
+     */
+    int getUiCount();
+
+    /**
+     * @return largest number of RatingStars components attached to a single
+     *         UI
+     */
+    int getMaxInstancesPerUi();
+
+    /**
+     * Resets the counters and histograms. The live instances are not reset.
+     */
+    void reset();
+
+}
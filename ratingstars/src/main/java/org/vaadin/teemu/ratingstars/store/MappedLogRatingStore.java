@@ -0,0 +1,309 @@
+package org.vaadin.teemu.ratingstars.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A reference store appending the votes to a local binary log file that is
+ * mapped to memory, so storing a vote is a memory write instead of a system
+ * call. The log is periodically compacted by merging the votes of each item
+ * and rating into a single record.
+ * <p>
+ * The file starts with a header of a magic number, a format version, the
+ * number of records, the position the log was last compacted at and the
+ * number of records merged by that compaction, followed by fixed size
+ * records of the item id, the
+ * previous rating, the new rating and the weight of the vote. The records of
+ * a batch are forced to the disk before the record count in the header is
+ * updated, so a batch torn by a crash is ignored when the file is opened
+ * again. The header itself is written to the disk by the operating system or
+ * when the store is {@link #flush() flushed}, so the last batches may be lost
+ * in a crash, but never read partly.
+ * <p>
+ * The votes of the log can be read back with {@link #replay(Consumer)}, for
+ * example to restore an aggregator when the application starts. The
+ * {@link #getPosition() position} of the log counts the votes stored since
+ * the log was created and is kept across compactions, so the votes stored
+ * after a snapshot of an aggregator can be replayed with
+ * {@link #replay(long, Consumer)}. Storing
+ * forces the file to the disk once per call, so combine with a
+ * {@link WriteBehindRatingStore} to write the votes in batches.
+ */
+public class MappedLogRatingStore implements RatingStore {
+
+    private static final int MAGIC = 0x52535456; // "RSTV"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 8;
+    private static final int COMPACTED_POSITION_OFFSET = 16;
+    private static final int MERGED_COUNT_OFFSET = 24;
+    private static final int RECORD_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final Path file;
+    private final long compactionThreshold;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long recordCount;
+    private long compactedPosition;
+    private long mergedCount;
+    private long recordsSinceCompaction;
+    private boolean closed;
+
+    /**
+     * Opens or creates a log in the given file, compacting it after every
+     * million stored votes.
+     *
+     * @param file
+     * @throws IOException
+     *             if the file cannot be opened or is not a vote log
+     */
+    public MappedLogRatingStore(Path file) throws IOException {
+        this(file, 1_000_000);
+    }
+
+    /**
+     * Opens or creates a log in the given file.
+     *
+     * @param file
+     * @param compactionThreshold
+     *            number of stored votes after which the log is compacted
+     * @throws IOException
+     *             if the file cannot be opened or is not a vote log
+     */
+    public MappedLogRatingStore(Path file, long compactionThreshold) throws IOException {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "Given compaction threshold (" + compactionThreshold + ") must be greater than zero.");
+        }
+        this.file = file;
+        this.compactionThreshold = compactionThreshold;
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(size, HEADER_SIZE + INITIAL_CAPACITY * RECORD_SIZE));
+        if (size == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(COUNT_OFFSET, 0);
+            buffer.putLong(COMPACTED_POSITION_OFFSET, 0);
+            buffer.putLong(MERGED_COUNT_OFFSET, 0);
+        } else if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a vote log.");
+        } else if (buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of vote log " + file + ".");
+        }
+        recordCount = buffer.getLong(COUNT_OFFSET);
+        compactedPosition = buffer.getLong(COMPACTED_POSITION_OFFSET);
+        mergedCount = buffer.getLong(MERGED_COUNT_OFFSET);
+        recordsSinceCompaction = 0;
+    }
+
+    /**
+     * @return number of records currently in the log
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of votes stored since the log was created. Unlike
+     * the number of records, compacting the log doesn't change it.
+     *
+     * @return the position of the next vote stored
+     */
+    @Override
+    public synchronized long getPosition() {
+        return compactedPosition + recordCount - mergedCount;
+    }
+
+    @Override
+    public synchronized void storeAll(List<RatingVote> votes) {
+        ensureOpen();
+        try {
+            ensureCapacity(recordCount + votes.size());
+            int position = toPosition(recordCount);
+            for (RatingVote vote : votes) {
+                buffer.putLong(position, vote.getItemId());
+                buffer.putDouble(position + 8, vote.getPreviousRating());
+                buffer.putDouble(position + 16, vote.getRating());
+                buffer.putLong(position + 24, vote.getWeight());
+                position += RECORD_SIZE;
+            }
+            // the records must reach the disk before the count including them
+            buffer.force();
+            recordCount += votes.size();
+            buffer.putLong(COUNT_OFFSET, recordCount);
+
+            recordsSinceCompaction += votes.size();
+            if (recordsSinceCompaction >= compactionThreshold) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureCapacity(long records) throws IOException {
+        long required = HEADER_SIZE + records * RECORD_SIZE;
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Vote log " + file + " is full, compaction is needed.");
+        }
+        if (required > buffer.capacity()) {
+            long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, buffer.capacity() * 2L));
+            // mapping beyond the end of the file grows the file
+            buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static int toPosition(long record) {
+        return (int) (HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    /**
+     * Passes every vote of the log to the given consumer in the order they
+     * were stored.
+     *
+     * @param consumer
+     */
+    public synchronized void replay(Consumer<RatingVote> consumer) {
+        ensureOpen();
+        replayRecords(0, consumer);
+    }
+
+    /**
+     * Passes the votes stored at or after the given {@link #getPosition()
+     * position} to the given consumer in the order they were stored, for
+     * example the votes stored after a
+     * {@link org.vaadin.teemu.ratingstars.aggregate.RatingSnapshot snapshot}
+     * was written.
+     *
+     * @param fromPosition
+     * @param consumer
+     * @throws IllegalArgumentException
+     *             if the votes from the position have been merged by a later
+     *             compaction or the position is beyond the end of the log
+     */
+    public synchronized void replay(long fromPosition, Consumer<RatingVote> consumer) {
+        ensureOpen();
+        if (fromPosition < compactedPosition || fromPosition > getPosition()) {
+            throw new IllegalArgumentException("Given position (" + fromPosition + ") must be between "
+                    + compactedPosition + " and " + getPosition() + ", the votes before " + compactedPosition
+                    + " have been compacted.");
+        }
+        replayRecords(mergedCount + fromPosition - compactedPosition, consumer);
+    }
+
+    private void replayRecords(long fromRecord, Consumer<RatingVote> consumer) {
+        int position = toPosition(fromRecord);
+        for (long i = fromRecord; i < recordCount; i++) {
+            consumer.accept(new RatingVote(buffer.getLong(position), buffer.getDouble(position + 8),
+                    buffer.getDouble(position + 16), buffer.getLong(position + 24)));
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Rewrites the log merging the votes of each item and rating into a
+     * single new vote. The compacted log is written to a temporary file that
+     * then replaces the log, so a failed compaction leaves the log intact.
+     *
+     * @throws IOException
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        Map<Long, Map<Double, Long>> counts = new LinkedHashMap<>();
+        replay(vote -> {
+            Map<Double, Long> itemCounts = counts.computeIfAbsent(vote.getItemId(), id -> new LinkedHashMap<>());
+            if (vote.getPreviousRating() > 0) {
+                itemCounts.merge(vote.getPreviousRating(), -vote.getWeight(), Long::sum);
+            }
+            if (vote.getRating() > 0) {
+                itemCounts.merge(vote.getRating(), vote.getWeight(), Long::sum);
+            }
+        });
+        List<RatingVote> merged = new ArrayList<>();
+        for (Map.Entry<Long, Map<Double, Long>> item : counts.entrySet()) {
+            for (Map.Entry<Double, Long> rating : item.getValue().entrySet()) {
+                if (rating.getValue() != 0) {
+                    merged.add(new RatingVote(item.getKey(), 0.0, rating.getKey(), rating.getValue()));
+                }
+            }
+        }
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        MappedLogRatingStore target = new MappedLogRatingStore(compacted, Long.MAX_VALUE);
+        try {
+            target.storeAll(merged);
+            target.markCompacted(getPosition());
+            target.flush();
+        } finally {
+            target.close();
+        }
+
+        buffer.force();
+        channel.close();
+        try {
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            open();
+        }
+    }
+
+    /**
+     * Marks all records of this log as the merged votes up to the given
+     * position.
+     */
+    private synchronized void markCompacted(long position) {
+        compactedPosition = position;
+        mergedCount = recordCount;
+        buffer.putLong(COMPACTED_POSITION_OFFSET, compactedPosition);
+        buffer.putLong(MERGED_COUNT_OFFSET, mergedCount);
+    }
+
+    @Override
+    public synchronized void flush() {
+        ensureOpen();
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Vote log " + file + " is closed.");
+        }
+    }
+
+}
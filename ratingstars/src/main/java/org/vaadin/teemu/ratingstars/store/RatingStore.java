@@ -0,0 +1,64 @@
+package org.vaadin.teemu.ratingstars.store;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Service provider interface for persisting the votes given through
+ * RatingStars components. Votes are reported to the store by a
+ * {@link org.vaadin.teemu.ratingstars.aggregate.RatingAggregator
+ * RatingAggregator} the store is set to.
+ * <p>
+ * Implementations must be thread-safe. Failures are reported as unchecked
+ * exceptions, for example {@link java.io.UncheckedIOException}.
+ *
+ * @see WriteBehindRatingStore
+ * @see MappedLogRatingStore
+ */
+public interface RatingStore extends AutoCloseable {
+
+    /**
+     * Stores the given votes in order.
+     *
+     * @param votes
+     */
+    void storeAll(List<RatingVote> votes);
+
+    /**
+     * Stores a single vote. By default delegates to
+     * {@link #storeAll(List)}.
+     *
+     * @param vote
+     */
+    default void store(RatingVote vote) {
+        storeAll(Collections.singletonList(vote));
+    }
+
+    /**
+     * Returns the number of votes accepted by the store so far, if the store
+     * keeps a log of the votes that can be replayed from a position. Does
+     * not support positions by default.
+     *
+     * @return the position of the next vote stored or <code>-1</code> if
+     *         not supported
+     */
+    default long getPosition() {
+        return -1;
+    }
+
+    /**
+     * Makes sure all votes stored so far are persisted. Does nothing by
+     * default.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes and releases the resources of the store. Does nothing by
+     * default.
+     */
+    @Override
+    default void close() {
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.vaadin.teemu.ratingstars.store;
+
+import java.io.Serializable;
+
+/**
+ * An immutable vote reported to a {@link RatingStore}. A vote replaces the
+ * previous rating given by the same voter, so it carries both the previous
+ * and the new rating. Zero stands for no rating, which makes a vote with no
+ * previous rating a new vote and a vote with no new rating a removed vote.
+ * <p>
+ * The weight tells how many identical votes the record stands for, which
+ * allows stores to merge votes.
+ */
+public final class RatingVote implements Serializable {
+    private static final long serialVersionUID = -1846412263340962093L;
+
+    private final long itemId;
+    private final double previousRating;
+    private final double rating;
+    private final long weight;
+
+    /**
+     * Constructs a new single vote.
+     *
+     * @param itemId
+     * @param previousRating
+     *            the replaced rating or zero if there was none
+     * @param rating
+     *            the new rating or zero if the vote was removed
+     */
+    public RatingVote(long itemId, double previousRating, double rating) {
+        this(itemId, previousRating, rating, 1);
+    }
+
+    /**
+     * Constructs a new vote standing for the given number of identical votes.
+     *
+     * @param itemId
+     * @param previousRating
+     *            the replaced rating or zero if there was none
+     * @param rating
+     *            the new rating or zero if the vote was removed
+     * @param weight
+     *            number of votes
+     */
+    public RatingVote(long itemId, double previousRating, double rating, long weight) {
+        this.itemId = itemId;
+        this.previousRating = previousRating;
+        this.rating = rating;
+        this.weight = weight;
+    }
+
+    /**
+     * @return id of the voted item
+     */
+    public long getItemId() {
+        return itemId;
+    }
+
+    /**
+     * @return the replaced rating or zero if there was none
+     */
+    public double getPreviousRating() {
+        return previousRating;
+    }
+
+    /**
+     * @return the new rating or zero if the vote was removed
+     */
+    public double getRating() {
+        return rating;
+    }
+
+    /**
+     * @return number of votes this vote stands for
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "RatingVote[itemId=" + itemId + ", previousRating=" + previousRating + ", rating=" + rating
+                + ", weight=" + weight + "]";
+    }
+
+}
@@ -0,0 +1,278 @@
+package org.vaadin.teemu.ratingstars.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A store keeping the votes in memory and writing them to another store in
+ * batches. A batch is written when the configured number of votes is pending
+ * or when the flush interval has passed, whichever comes first, so voting
+ * never waits for the I/O of the delegate store.
+ * <p>
+ * All batches are written by a single thread, so the delegate sees the votes
+ * in the order they were given. A batch failing to be written is logged and
+ * retried with the next flush. While the delegate keeps failing, at most the
+ * configured number of votes are kept pending and the votes exceeding it are
+ * dropped, logged and counted by {@link #getDroppedCount()}. An explicit
+ * {@link #flush()} or {@link #close()} throws instead if votes remain
+ * pending. Votes not yet written are lost if the JVM exits without the store
+ * being closed.
+ */
+public class WriteBehindRatingStore implements RatingStore {
+
+    private final RatingStore delegate;
+    private final int batchSize;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledFuture<?> flushTask;
+    private final ConcurrentLinkedDeque<RatingVote> pending = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicBoolean dropping = new AtomicBoolean();
+    private final AtomicLong position;
+    /** Held while queueing, so the votes are queued in the order reserved. */
+    private final Object queueLock = new Object();
+
+    /**
+     * Constructs a new write-behind store for the given delegate, keeping at
+     * most a hundred batches pending.
+     *
+     * @param delegate
+     *            the store the batches are written to
+     * @param batchSize
+     *            number of pending votes triggering a flush
+     * @param flushInterval
+     *            maximum time a vote is kept in memory
+     * @param unit
+     *            time unit of the flush interval
+     */
+    public WriteBehindRatingStore(RatingStore delegate, int batchSize, long flushInterval, TimeUnit unit) {
+        this(delegate, batchSize, (int) Math.min(Integer.MAX_VALUE, batchSize * 100L), flushInterval, unit);
+    }
+
+    /**
+     * Constructs a new write-behind store for the given delegate.
+     *
+     * @param delegate
+     *            the store the batches are written to
+     * @param batchSize
+     *            number of pending votes triggering a flush
+     * @param maxPending
+     *            number of pending votes after which new votes are dropped
+     *            until the delegate accepts the pending ones
+     * @param flushInterval
+     *            maximum time a vote is kept in memory
+     * @param unit
+     *            time unit of the flush interval
+     */
+    public WriteBehindRatingStore(RatingStore delegate, int batchSize, int maxPending, long flushInterval,
+            TimeUnit unit) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Given batch size (" + batchSize + ") must be greater than zero.");
+        }
+        if (maxPending < batchSize) {
+            throw new IllegalArgumentException(
+                    "Given maximum pending votes (" + maxPending + ") must be at least the batch size.");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "Given flush interval (" + flushInterval + ") must be greater than zero.");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        position = new AtomicLong(delegate.getPosition());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratingstars-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushTask = scheduler.scheduleWithFixedDelay(this::writePending, flushInterval, flushInterval, unit);
+    }
+
+    @Override
+    public void store(RatingVote vote) {
+        synchronized (queueLock) {
+            if (!reserve(1)) {
+                return;
+            }
+            pending.add(vote);
+        }
+        requestFlushIfFull();
+    }
+
+    @Override
+    public void storeAll(List<RatingVote> votes) {
+        synchronized (queueLock) {
+            if (!reserve(votes.size())) {
+                return;
+            }
+            pending.addAll(votes);
+        }
+        requestFlushIfFull();
+    }
+
+    /**
+     * Counts the given number of votes as pending unless that would exceed
+     * the maximum, in which case they are dropped. Called holding the queue
+     * lock, the writer thread only decreasing the count concurrently.
+     *
+     * @return <code>true</code> if the votes should be queued
+     */
+    private boolean reserve(int votes) {
+        if (pendingCount.get() + votes > maxPending) {
+            droppedCount.addAndGet(votes);
+            if (dropping.compareAndSet(false, true)) {
+                getLogger().log(Level.SEVERE, maxPending
+                        + " votes are pending, dropping the new votes until the delegate store accepts them.");
+            }
+            return false;
+        }
+        pendingCount.addAndGet(votes);
+        if (position.get() >= 0) {
+            position.addAndGet(votes);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of votes not yet written to the delegate store
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Returns the position of the delegate store once the pending votes have
+     * been written, the dropped votes not being counted.
+     */
+    @Override
+    public long getPosition() {
+        return position.get();
+    }
+
+    /**
+     * @return number of votes dropped because too many votes were pending
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void requestFlushIfFull() {
+        if (pendingCount.get() >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushRequested.set(false);
+                writePending();
+            });
+        }
+    }
+
+    /**
+     * Writes all pending votes. Only called from the scheduler thread.
+     *
+     * @return the failure of the delegate store, already logged, or
+     *         <code>null</code> if all pending votes were written
+     */
+    private RuntimeException writePending() {
+        while (!pending.isEmpty()) {
+            List<RatingVote> batch = new ArrayList<>(batchSize);
+            RatingVote vote;
+            while (batch.size() < batchSize && (vote = pending.poll()) != null) {
+                batch.add(vote);
+            }
+            try {
+                delegate.storeAll(batch);
+                pendingCount.addAndGet(-batch.size());
+                dropping.set(false);
+            } catch (RuntimeException e) {
+                getLogger().log(Level.WARNING, "Writing " + batch.size() + " votes failed, retrying later.", e);
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    pending.addFirst(batch.get(i));
+                }
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes all pending votes to the delegate store and flushes it. Blocks
+     * until done.
+     *
+     * @throws IllegalStateException
+     *             if the delegate store fails to accept the pending votes,
+     *             which are kept pending, or if the calling thread is
+     *             interrupted while waiting, the interrupt flag of the thread
+     *             being set again
+     */
+    @Override
+    public void flush() {
+        await(scheduler.submit(() -> {
+            RuntimeException failure = writePending();
+            if (failure != null) {
+                throw new IllegalStateException(
+                        "Writing the votes failed, " + pendingCount.get() + " votes are pending.", failure);
+            }
+            delegate.flush();
+        }));
+    }
+
+    /**
+     * Writes all pending votes, stops the flushing thread and closes the
+     * delegate store. The delegate store is closed even if writing the votes
+     * fails.
+     *
+     * @throws IllegalStateException
+     *             if the delegate store fails to accept the pending votes,
+     *             which are then lost
+     */
+    @Override
+    public void close() {
+        flushTask.cancel(false);
+        try {
+            flush();
+        } finally {
+            scheduler.shutdown();
+            delegate.close();
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the votes to be written.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Logger getLogger() {
+        return Logger.getLogger(WriteBehindRatingStore.class.getName());
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.gwt.client.MultiRatingStarsServerRpc;
+
+/**
+ * Tests the values MultiRatingStars accepts from the client.
+ */
+public class MultiRatingStarsTest {
+
+    private TestUI ui;
+    private MultiRatingStars multiRatingStars;
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        multiRatingStars = new MultiRatingStars("Quality", "Price");
+        ui.setContent(multiRatingStars);
+    }
+
+    @Test
+    public void validValue_accepted() {
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 1, 4.0);
+
+        assertArrayEquals(new double[] { 0.0, 4.0 }, multiRatingStars.getValues(), 0.0);
+    }
+
+    @Test
+    public void invalidValues_ignored() {
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 0, Double.NaN);
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 0, -1.0);
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 1, 5.5);
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 2, 3.0);
+
+        assertArrayEquals(new double[] { 0.0, 0.0 }, multiRatingStars.getValues(), 0.0);
+    }
+
+    @Test
+    public void readOnly_ignoresValues() {
+        multiRatingStars.setReadOnly(true);
+
+        ui.invoke(multiRatingStars, MultiRatingStarsServerRpc.class, "valueChanged", 0, 3.0);
+
+        assertArrayEquals(new double[] { 0.0, 0.0 }, multiRatingStars.getValues(), 0.0);
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsCaptionRegistryState;
+
+import com.vaadin.ui.VerticalLayout;
+
+/**
+ * Tests that the caption sets and configurations are removed from the
+ * registry when the last component using them is detached.
+ */
+public class RatingStarsCaptionRegistryTest {
+
+    private static final RatingStarsCaptionSet CAPTIONS = new RatingStarsCaptionSet("captions", "Poor", "OK", "Good");
+    private static final RatingStarsCaptionSet CONFIG_CAPTIONS = new RatingStarsCaptionSet("config-captions", "Bad",
+            "Fine");
+    private static final RatingStarsConfig CONFIG = new RatingStarsConfig("config").withCaptionSet(CONFIG_CAPTIONS);
+
+    private TestUI ui;
+    private VerticalLayout layout;
+    private RatingStarsCaptionRegistry registry;
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        layout = new VerticalLayout();
+        ui.setContent(layout);
+        registry = RatingStarsCaptionRegistry.get(ui);
+    }
+
+    @Test
+    public void lastComponentDetached_captionSetRemoved() {
+        RatingStars first = new RatingStars();
+        first.setValueCaptionSet(CAPTIONS);
+        RatingStars second = new RatingStars();
+        second.setValueCaptionSet(CAPTIONS);
+        layout.addComponents(first, second);
+
+        layout.removeComponent(first);
+        assertTrue(getState().captionSets.containsKey(CAPTIONS.getId()));
+        layout.removeComponent(second);
+        assertFalse(getState().captionSets.containsKey(CAPTIONS.getId()));
+    }
+
+    @Test
+    public void captionSetReplaced_previousRemoved() {
+        RatingStars ratingStars = new RatingStars();
+        ratingStars.setValueCaptionSet(CAPTIONS);
+        layout.addComponent(ratingStars);
+
+        ratingStars.setValueCaptionSet(CONFIG_CAPTIONS);
+        assertFalse(getState().captionSets.containsKey(CAPTIONS.getId()));
+        assertTrue(getState().captionSets.containsKey(CONFIG_CAPTIONS.getId()));
+    }
+
+    @Test
+    public void lastComponentDetached_configAndItsCaptionSetRemoved() {
+        RatingStars first = new RatingStars(CONFIG);
+        RatingStars second = new RatingStars(CONFIG);
+        layout.addComponents(first, second);
+        registry.update(CONFIG.withMaxValue(10));
+
+        layout.removeComponent(first);
+        assertNotNull(registry.getConfig(CONFIG.getId()));
+        assertTrue(getState().captionSets.containsKey(CONFIG_CAPTIONS.getId()));
+        layout.removeComponent(second);
+        assertNull(registry.getConfig(CONFIG.getId()));
+        assertFalse(getState().configs.containsKey(CONFIG.getId()));
+        assertFalse(getState().captionSets.containsKey(CONFIG_CAPTIONS.getId()));
+    }
+
+    private RatingStarsCaptionRegistryState getState() {
+        return registry.getState(false);
+    }
+
+}
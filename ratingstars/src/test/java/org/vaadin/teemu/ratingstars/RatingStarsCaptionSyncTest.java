@@ -0,0 +1,106 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsClientRpc;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
+
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * Tests that the value captions are sent as a delta after the first response
+ * and that unchanged caption writes send nothing.
+ */
+public class RatingStarsCaptionSyncTest {
+
+    private static final String[] CAPTIONS = { "Epic Fail", "Poor", "OK", "Good", "Excellent" };
+
+    private TestUI ui;
+    private RatingStars ratingStars;
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        ratingStars = new RatingStars();
+        ratingStars.setValueCaption(CAPTIONS);
+        ui.setContent(ratingStars);
+    }
+
+    @Test
+    public void initialResponse_sendsAllCaptionsInState() {
+        JsonObject response = ui.respond();
+
+        JsonObject state = TestUI.getStateChanges(response, ratingStars);
+        assertTrue(state.hasKey("valueCaptions"));
+        assertTrue(TestUI.getRpcCalls(response, ratingStars).isEmpty());
+    }
+
+    @Test
+    public void captionChange_sendsOnlyChangedEntryAsRpc() {
+        ui.respond();
+
+        ratingStars.setValueCaption(4, "Your Rating");
+        JsonObject response = ui.respond();
+
+        assertNull(TestUI.getStateChanges(response, ratingStars));
+        List<JsonArray> calls = TestUI.getRpcCalls(response, ratingStars);
+        assertEquals(1, calls.size());
+        assertEquals(RatingStarsClientRpc.class.getName(), calls.get(0).getString(1));
+        assertEquals("updateValueCaptions", calls.get(0).getString(2));
+        // the map is encoded as [[keys], [values]]
+        JsonArray changed = calls.get(0).getArray(3).getArray(0);
+        assertEquals(1, changed.getArray(0).length());
+        assertEquals(4, (int) changed.getArray(0).getNumber(0));
+        assertEquals("Your Rating", changed.getArray(1).getString(0));
+    }
+
+    @Test
+    public void unchangedCaptions_doNotMarkDirty() {
+        ui.respond();
+
+        ratingStars.setValueCaption(CAPTIONS);
+
+        assertFalse(ui.getConnectorTracker().isDirty(ratingStars));
+        JsonObject response = ui.respond();
+        assertNull(TestUI.getStateChanges(response, ratingStars));
+        assertTrue(TestUI.getRpcCalls(response, ratingStars).isEmpty());
+    }
+
+    /**
+     * Counts the state changes per vote when a listener resets all captions
+     * and overrides one, like the demo does on every vote.
+     */
+    @Test
+    public void voteResettingCaptions_sendsNoCaptionStateChanges() {
+        ratingStars.addValueChangeListener(event -> {
+            ratingStars.setValueCaption(CAPTIONS);
+            ratingStars.setValueCaption((int) Math.round(event.getValue()), "Your Rating");
+        });
+        ui.respond();
+
+        int captionStateChanges = 0;
+        int captionRpcCalls = 0;
+        for (int vote = 1; vote <= 5; vote++) {
+            ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", (double) vote);
+            JsonObject response = ui.respond();
+
+            JsonObject state = TestUI.getStateChanges(response, ratingStars);
+            if (state != null && state.hasKey("valueCaptions")) {
+                captionStateChanges++;
+            }
+            captionRpcCalls += TestUI.getRpcCalls(response, ratingStars).size();
+        }
+
+        assertEquals(0, captionStateChanges);
+        assertEquals(5, captionRpcCalls);
+    }
+
+}
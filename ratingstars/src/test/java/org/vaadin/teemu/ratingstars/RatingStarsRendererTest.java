@@ -0,0 +1,56 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.RatingStarsRenderer.RatingChangeEvent;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsRendererServerRpc;
+
+import com.vaadin.ui.Grid;
+
+/**
+ * Tests that the renderer fires events only for the valid values sent by the
+ * client.
+ */
+public class RatingStarsRendererTest {
+
+    private TestUI ui;
+    private RatingStarsRenderer<String> renderer;
+    private String rowKey;
+    private final List<RatingChangeEvent<String>> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        Grid<String> grid = new Grid<>();
+        grid.setItems("item");
+        renderer = new RatingStarsRenderer<>();
+        renderer.addRatingChangeListener(events::add);
+        grid.addColumn(item -> 3.0, renderer).setId("rating");
+        ui.setContent(grid);
+        ui.respond();
+        rowKey = grid.getDataCommunicator().getKeyMapper().key("item");
+    }
+
+    @Test
+    public void validValue_fired() {
+        ui.invoke(renderer, RatingStarsRendererServerRpc.class, "valueChanged", rowKey, "rating", 4.0);
+
+        assertEquals(1, events.size());
+        assertEquals("item", events.get(0).getItem());
+        assertEquals(4.0, events.get(0).getValue(), 0.0);
+    }
+
+    @Test
+    public void invalidValues_ignored() {
+        for (double invalid : new double[] { 0.0, -1.0, 6.0, Double.NaN, Double.POSITIVE_INFINITY }) {
+            ui.invoke(renderer, RatingStarsRendererServerRpc.class, "valueChanged", rowKey, "rating", invalid);
+        }
+        assertEquals(0, events.size());
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.aggregate.RatingAggregator;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
+
+import com.vaadin.data.HasValue.ValueChangeEvent;
+import com.vaadin.server.ErrorEvent;
+
+/**
+ * Tests that a value rolled back by a failing asynchronous listener is
+ * visible to the listeners of the changes made by the user, so an aggregator
+ * doesn't keep counting the rejected vote.
+ */
+public class RatingStarsRollbackTest {
+
+    private static final long ITEM_ID = 1;
+
+    private TestUI ui;
+    private RatingStars ratingStars;
+    private RatingAggregator aggregator;
+    private final List<ErrorEvent> errors = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        ui.setErrorHandler(errors::add);
+        ratingStars = new RatingStars();
+        ratingStars.setListenerExecutor(Runnable::run);
+        ui.setContent(ratingStars);
+        aggregator = new RatingAggregator(5);
+        aggregator.bind(ratingStars, ITEM_ID);
+        ui.unlockSession();
+    }
+
+    @Test
+    public void failingAsyncListener_rollbackUndoesVote() {
+        List<ValueChangeEvent<Double>> events = new ArrayList<>();
+        ratingStars.addValueChangeListener(events::add);
+        ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", 3.0);
+        assertEquals(1, aggregator.getCount(ITEM_ID));
+
+        ratingStars.addAsyncValueChangeListener(event -> {
+            throw new IllegalStateException("rejected on purpose");
+        });
+        ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", 5.0);
+
+        ui.accessSynchronously(() -> assertEquals(3.0, ratingStars.getValue(), 0.0));
+        assertEquals(1, aggregator.getCount(ITEM_ID));
+        assertEquals(3.0, aggregator.getAverage(ITEM_ID), 0.0);
+        assertEquals(1, errors.size());
+
+        ValueChangeEvent<Double> rollback = events.get(events.size() - 1);
+        assertTrue(rollback instanceof RatingStars.RollbackEvent);
+        assertTrue(rollback.isUserOriginated());
+        assertEquals(5.0, rollback.getOldValue(), 0.0);
+    }
+
+}
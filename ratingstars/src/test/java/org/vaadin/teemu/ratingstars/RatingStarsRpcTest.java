@@ -0,0 +1,58 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingPrecision;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
+
+import elemental.json.JsonArray;
+
+/**
+ * Tests that the values sent by the client are rounded to the precision of
+ * the component and that invalid values are ignored.
+ */
+public class RatingStarsRpcTest {
+
+    private TestUI ui;
+    private RatingStars ratingStars;
+
+    @Before
+    public void setUp() {
+        ui = new TestUI();
+        ratingStars = new RatingStars();
+        ratingStars.setValue(2.0);
+        ui.setContent(ratingStars);
+        ui.respond();
+    }
+
+    @Test
+    public void value_roundedToPrecision() {
+        ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", 3.14159);
+        assertEquals(3.0, ratingStars.getValue(), 0.0);
+
+        ratingStars.setPrecision(RatingPrecision.HALF);
+        ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", 3.4);
+        assertEquals(3.5, ratingStars.getValue(), 0.0);
+
+        ratingStars.setPrecision(RatingPrecision.TENTH);
+        ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", 0.3);
+        assertEquals(0.3, ratingStars.getValue(), 0.0);
+    }
+
+    @Test
+    public void invalidValues_ignoredAndRestored() {
+        for (double invalid : new double[] { -1.0, 5.5, Double.NaN, Double.POSITIVE_INFINITY }) {
+            ui.invoke(ratingStars, RatingStarsServerRpc.class, "valueChanged", invalid);
+            assertEquals(2.0, ratingStars.getValue(), 0.0);
+
+            List<JsonArray> calls = TestUI.getRpcCalls(ui.respond(), ratingStars);
+            assertEquals(1, calls.size());
+            assertEquals("restoreValue", calls.get(0).getString(2));
+        }
+    }
+
+}
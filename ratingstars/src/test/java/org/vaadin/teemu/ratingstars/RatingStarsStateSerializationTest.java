@@ -0,0 +1,47 @@
+package org.vaadin.teemu.ratingstars;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsState;
+
+/**
+ * Tests the compact serialized form of {@link RatingStarsState}.
+ */
+public class RatingStarsStateSerializationTest {
+
+    @Test
+    public void captionsLongerThan64KB_serialized() throws Exception {
+        char[] chars = new char[40000];
+        Arrays.fill(chars, '★'); // three bytes each in UTF-8
+        String longCaption = new String(chars);
+
+        RatingStarsState state = new RatingStarsState();
+        state.captionSetId = "stars";
+        state.valueCaptions = new HashMap<>();
+        state.valueCaptions.put(1, longCaption);
+        state.valueCaptions.put(2, "Poor");
+        state.value = 2.5;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(state);
+        }
+        RatingStarsState read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (RatingStarsState) in.readObject();
+        }
+
+        assertEquals("stars", read.captionSetId);
+        assertEquals(state.valueCaptions, read.valueCaptions);
+        assertEquals(2.5, read.value, 0.0);
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.vaadin.teemu.ratingstars;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.DefaultDeploymentConfiguration;
+import com.vaadin.server.LegacyCommunicationManager;
+import com.vaadin.server.ServerRpcManager;
+import com.vaadin.server.ServerRpcManager.RpcInvocationException;
+import com.vaadin.server.ServerRpcMethodInvocation;
+import com.vaadin.server.ServiceException;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.communication.UidlWriter;
+import com.vaadin.shared.communication.ServerRpc;
+import com.vaadin.ui.UI;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+/**
+ * A UI with a session of its own for testing what the components send to the
+ * browser. The responses are written with the same {@link UidlWriter} as
+ * when running in a servlet container.
+ * <p>
+ * The session is locked by the thread constructing the UI, like during the
+ * handling of a request. Call {@link #unlockSession()} to let other threads
+ * access the UI through {@link UI#access(Runnable)}.
+ */
+public class TestUI extends UI {
+    private static final long serialVersionUID = 1L;
+
+    private static VaadinServletService service;
+
+    private static synchronized VaadinServletService testService() {
+        if (service == null) {
+            Properties parameters = new Properties();
+            parameters.setProperty("productionMode", "true");
+            try {
+                service = new VaadinServletService(new VaadinServlet(),
+                        new DefaultDeploymentConfiguration(TestUI.class, parameters));
+            } catch (ServiceException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return service;
+    }
+
+    private static class TestSession extends VaadinSession {
+        private static final long serialVersionUID = 1L;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        TestSession() {
+            super(testService());
+        }
+
+        @Override
+        public Lock getLockInstance() {
+            return lock;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public TestUI() {
+        VaadinSession session = new TestSession();
+        session.lock();
+        session.setCommunicationManager(new LegacyCommunicationManager(session));
+        setSession(session);
+    }
+
+    @Override
+    protected void init(VaadinRequest request) {
+    }
+
+    /**
+     * Unlocks the session locked by the constructor.
+     */
+    public void unlockSession() {
+        getSession().unlock();
+    }
+
+    /**
+     * Removes the UI from its session, detaching it and its components like
+     * the session does when the UI has been closed.
+     */
+    public void discard() {
+        VaadinSession session = getSession();
+        session.lock();
+        try {
+            setSession(null);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    /**
+     * Writes the response sent to the browser after handling a request.
+     *
+     * @return the response
+     */
+    public JsonObject respond() {
+        VaadinSession session = getSession();
+        session.lock();
+        try {
+            StringWriter writer = new StringWriter();
+            new UidlWriter().write(this, writer, false);
+            return Json.parse("{" + writer + "}");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    /**
+     * Calls a method of a server RPC interface of the connector like a
+     * request from the browser would.
+     *
+     * @param connector
+     * @param rpcInterface
+     * @param method
+     *            name of the method
+     * @param parameters
+     */
+    public void invoke(ClientConnector connector, Class<? extends ServerRpc> rpcInterface, String method,
+            Object... parameters) {
+        ServerRpcMethodInvocation invocation = new ServerRpcMethodInvocation(connector.getConnectorId(),
+                rpcInterface, method, parameters.length);
+        invocation.setParameters(parameters);
+        VaadinSession session = getSession();
+        session.lock();
+        try {
+            ServerRpcManager.applyInvocation(connector, invocation);
+        } catch (RpcInvocationException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    /**
+     * Returns the state changes of the connector in the response.
+     *
+     * @return the changed state properties or <code>null</code> if the state
+     *         of the connector was not sent
+     */
+    public static JsonObject getStateChanges(JsonObject response, ClientConnector connector) {
+        JsonObject states = response.getObject("state");
+        return states.hasKey(connector.getConnectorId()) ? states.getObject(connector.getConnectorId()) : null;
+    }
+
+    /**
+     * Returns the client RPC calls to the connector in the response, each as
+     * an array of the connector id, the interface name, the method name and
+     * the parameters.
+     */
+    public static List<JsonArray> getRpcCalls(JsonObject response, ClientConnector connector) {
+        List<JsonArray> calls = new ArrayList<>();
+        JsonArray rpc = response.getArray("rpc");
+        for (int i = 0; i < rpc.length(); i++) {
+            JsonArray call = rpc.getArray(i);
+            if (connector.getConnectorId().equals(call.getString(0))) {
+                calls.add(call);
+            }
+        }
+        return calls;
+    }
+
+}
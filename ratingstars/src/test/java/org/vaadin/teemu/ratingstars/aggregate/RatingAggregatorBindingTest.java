@@ -0,0 +1,85 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.TestUI;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
+
+/**
+ * Tests that serializing a component bound to an aggregator doesn't
+ * serialize the aggregator, and that the votes given through the
+ * deserialized component reach the shared aggregator.
+ */
+public class RatingAggregatorBindingTest {
+
+    private static final int ITEMS = 100000;
+    private static final long ITEM_ID = 1;
+    /** The aggregator alone serializes to megabytes. */
+    private static final int MAX_COMPONENT_SIZE = 10000;
+
+    private RatingAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new RatingAggregator(5);
+        for (long itemId = 0; itemId < ITEMS; itemId++) {
+            aggregator.addVote(itemId, 3.0);
+        }
+    }
+
+    @Test
+    public void boundComponent_serializedWithoutAggregator() throws Exception {
+        RatingStars ratingStars = new RatingStars();
+        aggregator.bind(ratingStars, ITEM_ID);
+
+        byte[] bytes = serialize(ratingStars);
+        assertTrue("serialized to " + bytes.length + " bytes", bytes.length < MAX_COMPONENT_SIZE);
+
+        RatingStars deserialized = (RatingStars) deserialize(bytes);
+        TestUI ui = new TestUI();
+        ui.setContent(deserialized);
+        ui.invoke(deserialized, RatingStarsServerRpc.class, "valueChanged", 5.0);
+        assertEquals(2, aggregator.getCount(ITEM_ID));
+        assertEquals(4.0, aggregator.getAverage(ITEM_ID), 0.0);
+    }
+
+    @Test
+    public void deserializedAverageDisplay_updatedOnVotes() throws Exception {
+        RatingStars average = new RatingStars();
+        aggregator.bindAverage(average, ITEM_ID);
+        byte[] bytes = serialize(average);
+        assertTrue("serialized to " + bytes.length + " bytes", bytes.length < MAX_COMPONENT_SIZE);
+
+        RatingStars deserialized = (RatingStars) deserialize(bytes);
+        TestUI ui = new TestUI();
+        ui.setContent(deserialized);
+        ui.unlockSession();
+        aggregator.addVote(ITEM_ID, 5.0);
+        ui.accessSynchronously(() -> assertEquals(4.0, deserialized.getValue(), 0.0));
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.RatingDistribution;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.TestUI;
+
+import com.vaadin.ui.VerticalLayout;
+
+/**
+ * Registers displays in thousands of UIs to a {@link RatingBroadcaster} and
+ * checks that the changes are coalesced to one update per window, that no
+ * update is lost or delivered twice and that the displays of closed UIs are
+ * released. Also checks that a registered component can be serialized.
+ */
+public class RatingBroadcasterStressTest {
+
+    private static final int UIS = 2000;
+    private static final int ITEMS = 20;
+
+    private RatingAggregator aggregator;
+    private ManualScheduler scheduler;
+    private RatingBroadcaster broadcaster;
+
+    private List<TestUI> uis;
+    private List<CountingRatingStars> averages;
+    private List<CountingDistribution> distributions;
+
+    /**
+     * Runs the periodic flush of the broadcaster only when the test calls
+     * {@link #flush()}.
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private Runnable task;
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+                TimeUnit unit) {
+            task = command;
+            return super.scheduleWithFixedDelay(command, 1, 1, TimeUnit.DAYS);
+        }
+
+        void flush() {
+            task.run();
+        }
+    }
+
+    /** Counts the values written by the broadcaster. */
+    private static class CountingRatingStars extends RatingStars {
+        private static final long serialVersionUID = 1L;
+
+        final long itemId;
+        final AtomicInteger updates = new AtomicInteger();
+        final AtomicInteger duplicates = new AtomicInteger();
+        volatile double value;
+
+        CountingRatingStars(long itemId) {
+            this.itemId = itemId;
+        }
+
+        @Override
+        protected void doSetValue(Double value) {
+            if (updates.incrementAndGet() > 1 && value == this.value) {
+                duplicates.incrementAndGet();
+            }
+            this.value = value;
+            super.doSetValue(value);
+        }
+    }
+
+    /** Counts the counts written by the broadcaster. */
+    private static class CountingDistribution extends RatingDistribution {
+        private static final long serialVersionUID = 1L;
+
+        final long itemId;
+        final AtomicInteger updates = new AtomicInteger();
+        volatile long[] counts;
+
+        CountingDistribution(long itemId) {
+            this.itemId = itemId;
+        }
+
+        @Override
+        public void setCounts(long... counts) {
+            updates.incrementAndGet();
+            this.counts = counts.clone();
+            super.setCounts(counts);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        aggregator = new RatingAggregator(5);
+        scheduler = new ManualScheduler();
+        broadcaster = new RatingBroadcaster(aggregator, scheduler, 1, TimeUnit.SECONDS);
+
+        uis = new ArrayList<>();
+        averages = new ArrayList<>();
+        distributions = new ArrayList<>();
+        for (int i = 0; i < UIS; i++) {
+            TestUI ui = new TestUI();
+            long itemId = i % ITEMS;
+            CountingRatingStars average = new CountingRatingStars(itemId);
+            CountingDistribution distribution = new CountingDistribution(itemId);
+            if (i % 2 == 0) {
+                // registered before and after being attached
+                broadcaster.register(average, itemId);
+                broadcaster.register(distribution, itemId);
+                ui.setContent(new VerticalLayout(average, distribution));
+            } else {
+                ui.setContent(new VerticalLayout(average, distribution));
+                broadcaster.register(average, itemId);
+                broadcaster.register(distribution, itemId);
+            }
+            ui.unlockSession();
+            uis.add(ui);
+            averages.add(average);
+            distributions.add(distribution);
+        }
+        resetUpdates();
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void manyVotes_deliveredOncePerWindow() {
+        for (int vote = 0; vote < 10000; vote++) {
+            aggregator.addVote(vote % ITEMS, 1 + vote % 5);
+        }
+        scheduler.flush();
+
+        assertEquals(2 * UIS, broadcaster.getDisplayCount());
+        assertAllUpdated(1);
+
+        // nothing changed -> nothing delivered
+        scheduler.flush();
+        assertAllUpdated(1);
+    }
+
+    @Test
+    public void closedUis_released() {
+        List<WeakReference<TestUI>> closed = new ArrayList<>();
+        for (int i = UIS - 1; i >= 0; i -= 2) {
+            TestUI ui = uis.remove(i);
+            ui.discard();
+            closed.add(new WeakReference<>(ui));
+            averages.remove(i);
+            distributions.remove(i);
+        }
+        assertEquals(2 * uis.size(), broadcaster.getDisplayCount());
+
+        for (int attempt = 0; attempt < 10 && !allCleared(closed); attempt++) {
+            System.gc();
+        }
+        for (WeakReference<TestUI> ui : closed) {
+            assertNull("closed UI was not garbage collected", ui.get());
+        }
+
+        for (int vote = 0; vote < 1000; vote++) {
+            aggregator.addVote(vote % ITEMS, 5);
+        }
+        scheduler.flush();
+        assertAllUpdated(1);
+    }
+
+    @Test
+    public void reattachedDisplay_updatedOnAttach() {
+        TestUI ui = uis.get(0);
+        CountingRatingStars average = averages.get(0);
+        ui.accessSynchronously(() -> ui.setContent(null));
+        assertEquals(2 * UIS - 2, broadcaster.getDisplayCount());
+
+        aggregator.addVote(average.itemId, 4);
+        scheduler.flush();
+        assertEquals(0, average.updates.get());
+
+        ui.accessSynchronously(() -> ui.setContent(new VerticalLayout(average, distributions.get(0))));
+        assertEquals(2 * UIS, broadcaster.getDisplayCount());
+        assertEquals(4.0, average.value, 0.0);
+        assertEquals(1, average.updates.get());
+    }
+
+    @Test
+    public void registeredDisplay_serializedWithoutBroadcaster() throws Exception {
+        CountingRatingStars average = new CountingRatingStars(0);
+        broadcaster.register(average, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(average);
+        }
+        CountingRatingStars deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (CountingRatingStars) in.readObject();
+        }
+
+        TestUI ui = new TestUI();
+        ui.setContent(deserialized);
+        ui.unlockSession();
+        assertEquals(2 * UIS + 1, broadcaster.getDisplayCount());
+        aggregator.addVote(0, 2);
+        scheduler.flush();
+        assertEquals(2.0, deserialized.value, 0.0);
+    }
+
+    @Test
+    public void concurrentVotesAndFlushes_noLostOrDuplicatedUpdates() throws InterruptedException {
+        int voters = 4;
+        CountDownLatch done = new CountDownLatch(voters);
+        AtomicBoolean voting = new AtomicBoolean(true);
+        for (int voter = 0; voter < voters; voter++) {
+            int seed = voter;
+            new Thread(() -> {
+                for (int vote = 0; vote < 20000; vote++) {
+                    aggregator.addVote((vote + seed) % ITEMS, 1 + (vote * 7 + seed) % 5);
+                }
+                done.countDown();
+            }).start();
+        }
+        int flushes = 0;
+        new Thread(() -> {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            voting.set(false);
+        }).start();
+        while (voting.get()) {
+            scheduler.flush();
+            flushes++;
+        }
+        scheduler.flush();
+        flushes++;
+
+        for (CountingRatingStars average : averages) {
+            // the last delivered average is shown with the same bar width
+            assertEquals(barWidth(aggregator.getAverage(average.itemId)), barWidth(average.value));
+            assertTrue(average.updates.get() <= flushes);
+            assertEquals(0, average.duplicates.get());
+        }
+        for (CountingDistribution distribution : distributions) {
+            RatingDistribution expected = new RatingDistribution();
+            expected.setCounts(aggregator.getSummary(distribution.itemId).getCounts());
+            RatingDistribution shown = new RatingDistribution();
+            shown.setCounts(distribution.counts);
+            for (int step = 1; step <= 5; step++) {
+                assertEquals(expected.getPercentage(step), shown.getPercentage(step));
+            }
+            assertTrue(distribution.updates.get() <= flushes);
+        }
+    }
+
+    private void resetUpdates() {
+        for (CountingRatingStars average : averages) {
+            average.updates.set(0);
+        }
+        for (CountingDistribution distribution : distributions) {
+            distribution.updates.set(0);
+        }
+    }
+
+    private void assertAllUpdated(int updates) {
+        for (CountingRatingStars average : averages) {
+            assertEquals(updates, average.updates.get());
+            assertEquals(aggregator.getAverage(average.itemId), average.value, 0.0);
+        }
+        for (CountingDistribution distribution : distributions) {
+            assertEquals(updates, distribution.updates.get());
+        }
+    }
+
+    private static boolean allCleared(List<WeakReference<TestUI>> references) {
+        for (WeakReference<TestUI> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int barWidth(double value) {
+        return (int) (value * 100 / 5);
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.vaadin.teemu.ratingstars.aggregate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.vaadin.teemu.ratingstars.store.MappedLogRatingStore;
+
+/**
+ * Tests restoring an aggregator from a snapshot and the votes logged after
+ * it, and serializing an aggregator restored from a snapshot.
+ */
+public class RatingSnapshotTest {
+
+    private static final int ITEMS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotAndLaterVotes_restoredFromLog() throws IOException {
+        Path logFile = folder.getRoot().toPath().resolve("votes.log");
+        Path snapshotFile = folder.getRoot().toPath().resolve("votes.snapshot");
+
+        RatingAggregator aggregator = new RatingAggregator(5);
+        MappedLogRatingStore log = new MappedLogRatingStore(logFile);
+        aggregator.setStore(log);
+        vote(aggregator, 40);
+        // compacting merges votes before the snapshot only
+        log.compact();
+        vote(aggregator, 60);
+        aggregator.writeSnapshot(snapshotFile);
+        vote(aggregator, 100);
+        log.close();
+
+        RatingAggregator restored = new RatingAggregator(5);
+        MappedLogRatingStore reopened = new MappedLogRatingStore(logFile);
+        try {
+            RatingSnapshot snapshot = RatingSnapshot.open(snapshotFile);
+            assertEquals(100, snapshot.getLogPosition());
+            assertEquals(200, reopened.getPosition());
+            restored.restore(snapshot, reopened);
+        } finally {
+            reopened.close();
+        }
+        assertSameCounts(aggregator, restored);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void logCompactedPastSnapshot_rejected() throws IOException {
+        Path logFile = folder.getRoot().toPath().resolve("votes.log");
+        Path snapshotFile = folder.getRoot().toPath().resolve("votes.snapshot");
+
+        RatingAggregator aggregator = new RatingAggregator(5);
+        MappedLogRatingStore log = new MappedLogRatingStore(logFile);
+        try {
+            aggregator.setStore(log);
+            vote(aggregator, 10);
+            aggregator.writeSnapshot(snapshotFile);
+            vote(aggregator, 10);
+            log.compact();
+
+            new RatingAggregator(5).restore(RatingSnapshot.open(snapshotFile), log);
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void restoredAggregator_serializedWithUnloadedItems() throws Exception {
+        Path snapshotFile = folder.getRoot().toPath().resolve("votes.snapshot");
+        RatingAggregator aggregator = new RatingAggregator(5);
+        vote(aggregator, 100);
+        aggregator.writeSnapshot(snapshotFile);
+
+        RatingAggregator restored = new RatingAggregator(5);
+        restored.restore(RatingSnapshot.open(snapshotFile));
+        restored.addVote(0, 5); // load only one item
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(restored);
+        }
+        RatingAggregator deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (RatingAggregator) in.readObject();
+        }
+        assertSameCounts(restored, deserialized);
+    }
+
+    private static void vote(RatingAggregator aggregator, int votes) {
+        for (int vote = 0; vote < votes; vote++) {
+            aggregator.addVote(vote % ITEMS, 1 + vote * 7 % 5);
+        }
+    }
+
+    private static void assertSameCounts(RatingAggregator expected, RatingAggregator actual) {
+        for (long itemId = 0; itemId < ITEMS; itemId++) {
+            assertArrayEquals(expected.getSummary(itemId).getCounts(), actual.getSummary(itemId).getCounts());
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.vaadin.teemu.ratingstars.guard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.TestUI;
+import org.vaadin.teemu.ratingstars.gwt.client.RatingStarsServerRpc;
+
+/**
+ * Tests that concurrent votes of the same voter can't exceed the limits, that
+ * duplicates are rejected and that a deserialized component is still guarded.
+ */
+public class VoteGuardTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void concurrentVotes_limitNotExceeded() throws Exception {
+        VoteGuard guard = new VoteGuard(5, 1000, 1, 0, TimeUnit.HOURS, 1000);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int vote = 0; vote < 1000; vote++) {
+                    guard.accept("voter", 1, 1 + vote % 5);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5, guard.getAcceptedCount());
+        assertEquals(THREADS * 1000 - 5, guard.getRateLimitedCount());
+    }
+
+    @Test
+    public void sameRatingAgain_rejectedAsDuplicate() {
+        VoteGuard guard = new VoteGuard(5, 5, 1, 1, TimeUnit.HOURS, 1);
+
+        assertTrue(guard.accept("voter", 1, 4.0));
+        assertFalse(guard.accept("voter", 1, 4.0));
+        assertTrue(guard.accept("voter", 1, 3.0));
+        assertTrue(guard.accept("other", 1, 3.0));
+
+        assertEquals(3, guard.getAcceptedCount());
+        assertEquals(1, guard.getDuplicateCount());
+    }
+
+    @Test
+    public void votersWithSameStringHash_notDuplicates() {
+        VoteGuard guard = new VoteGuard(5, 5, 1, 1, TimeUnit.HOURS, 1000);
+
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertTrue(guard.accept("Aa", 1, 4.0));
+        assertTrue(guard.accept("BB", 1, 4.0));
+        assertEquals(0, guard.getDuplicateCount());
+    }
+
+    @Test
+    public void deserializedComponent_stillGuarded() throws Exception {
+        VoteGuard guard = new VoteGuard(5, 5, 1, 1, TimeUnit.HOURS, 1000);
+        RatingStars ratingStars = new RatingStars();
+        guard.bind(ratingStars, 1, () -> "voter");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(ratingStars);
+        }
+        RatingStars deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (RatingStars) in.readObject();
+        }
+        TestUI ui = new TestUI();
+        ui.setContent(deserialized);
+        ui.invoke(deserialized, RatingStarsServerRpc.class, "valueChanged", 4.0);
+        ui.invoke(deserialized, RatingStarsServerRpc.class, "valueChanged", 4.0);
+
+        assertEquals(1, guard.getAcceptedCount());
+        assertEquals(1, guard.getDuplicateCount());
+    }
+
+}
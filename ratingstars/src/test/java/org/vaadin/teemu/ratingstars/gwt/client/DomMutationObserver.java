@@ -0,0 +1,74 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+/**
+ * Counts the DOM mutations the browser actually makes in the GWT tests,
+ * whether or not the code making them reports them. Attribute changes,
+ * including the inline styles and the class names, and text changes of the
+ * document are counted with a <code>MutationObserver</code>. The children
+ * added, moved and removed anywhere are counted by wrapping the child list
+ * methods of <code>Node</code>, because the <code>MutationObserver</code> of
+ * HtmlUnit doesn't report them.
+ */
+final class DomMutationObserver {
+
+    private static boolean installed;
+    private static int mutations;
+
+    private DomMutationObserver() {
+    }
+
+    /**
+     * Starts counting the mutations, if not started yet.
+     */
+    static void install() {
+        if (!installed) {
+            installed = true;
+            observe();
+        }
+    }
+
+    /**
+     * @return number of DOM mutations made since the last reset
+     */
+    static int getMutations() {
+        return mutations;
+    }
+
+    /**
+     * Resets the count to zero.
+     */
+    static void reset() {
+        mutations = 0;
+    }
+
+    private static void count(int count) {
+        mutations += count;
+    }
+
+    private static native void observe()
+    /*-{
+        var count = $entry(function(mutations) {
+            @org.vaadin.teemu.ratingstars.gwt.client.DomMutationObserver::count(I)(mutations);
+        });
+        new $wnd.MutationObserver(function(records) {
+            count(records.length);
+        }).observe($doc.body, {
+            attributes: true,
+            characterData: true,
+            subtree: true
+        });
+        var proto = $wnd.Node.prototype;
+        var wrap = function(name) {
+            var original = proto[name];
+            proto[name] = function() {
+                count(1);
+                return original.apply(this, arguments);
+            };
+        };
+        wrap('appendChild');
+        wrap('insertBefore');
+        wrap('removeChild');
+        wrap('replaceChild');
+    }-*/;
+
+}
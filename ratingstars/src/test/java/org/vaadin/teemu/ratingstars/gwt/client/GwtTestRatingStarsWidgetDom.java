@@ -0,0 +1,469 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.dom.client.StyleInjector;
+import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.user.client.Event;
+import com.google.gwt.user.client.Timer;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.RootPanel;
+
+/**
+ * Counts the DOM mutations and layout reads of scripted interaction sequences
+ * on {@link RatingStarsWidget} in HtmlUnit, and fails when a count exceeds its
+ * budget. Run by <code>mvn verify</code> on JDK 8, which GWT 2.8.0 needs.
+ * <p>
+ * The mutations are observed by the {@link DomMutationObserver}, so every DOM
+ * write made by the widget is counted. The layout reads are counted by the
+ * {@link DomCounters} compiled in, so only the reads the widget reports are
+ * counted. The widgets are tested without their connectors, which need the
+ * Vaadin client.
+ * <p>
+ * Each step of a sequence runs in an animation frame of its own, so the
+ * captions positioned in the following frame are counted too. The budgets are
+ * the counts of the current implementation: lower them when a change reduces
+ * the counts.
+ */
+public class GwtTestRatingStarsWidgetDom extends GWTTestCase {
+
+    private static final int HOVER_SWEEP_MUTATIONS = 22;
+    private static final int HOVER_SWEEP_LAYOUT_READS = 4;
+
+    /**
+     * The stars are measured once when the pointer enters them and the bar
+     * is moved once per animation frame.
+     */
+    private static final int SINGLE_ELEMENT_SWEEP_MUTATIONS = 17;
+    private static final int SINGLE_ELEMENT_SWEEP_LAYOUT_READS = 7;
+    private static final int SINGLE_ELEMENT_SWEEP_FRAMES = 10;
+
+    private static final int KEYBOARD_NAVIGATION_MUTATIONS = 33;
+    private static final int KEYBOARD_NAVIGATION_LAYOUT_READS = 12;
+
+    private static final int SET_MAX_VALUE_MUTATIONS = 13;
+    private static final int SET_MAX_VALUE_LAYOUT_READS = 0;
+
+    /**
+     * Toggling the maximum value between 5 and 10 should add or remove the 5
+     * differing stars and resize the bar, per widget and toggle.
+     */
+    private static final int MAX_VALUE_TOGGLE_MUTATIONS = 6;
+    private static final int MAX_VALUE_TOGGLE_WIDGETS = 50;
+    private static final int MAX_VALUE_TOGGLES = 20;
+
+    private static final int CAPTION_UPDATE_MUTATIONS = 2;
+    private static final int CAPTION_UPDATE_LAYOUT_READS = 4;
+
+    /** Width of a star in the single element mode set by the test CSS. */
+    private static final int STAR_WIDTH = 20;
+    private static boolean starWidthInjected;
+
+    private static final String[] CAPTIONS = { "Epic Fail", "Poor", "OK",
+            "Good", "Excellent" };
+
+    private RatingStarsWidget widget;
+
+    @Override
+    public String getModuleName() {
+        return "org.vaadin.teemu.ratingstars.gwt.RatingStarsDomCounters";
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        DomMutationObserver.install();
+        widget = new RatingStarsWidget();
+        widget.updateValueCaptions(captions(CAPTIONS));
+        RootPanel.get().add(widget);
+    }
+
+    @Override
+    protected void gwtTearDown() throws Exception {
+        RootPanel.get().clear();
+        StarCaptionUtil.hide();
+    }
+
+    public void testHoverSweep() {
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                Element[] stars = getStarElements();
+                for (int i = 0; i < stars.length; i++) {
+                    mouseOver(stars[i], i == 0 ? null : stars[i - 1]);
+                }
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                Element[] stars = getStarElements();
+                mouseOut(stars[stars.length - 1], Document.get().getBody());
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertBudget("hover sweep", HOVER_SWEEP_MUTATIONS,
+                        HOVER_SWEEP_LAYOUT_READS);
+            }
+        });
+    }
+
+    /**
+     * Sweeps the pointer across the stars in several animation frames, each
+     * having many mouse moves.
+     */
+    public void testSingleElementSweep() {
+        widget.setSingleElementEnabled(true);
+        widget.setMaxValue(50);
+        ScheduledCommand[] steps = new ScheduledCommand[SINGLE_ELEMENT_SWEEP_FRAMES + 2];
+        for (int frame = 0; frame < SINGLE_ELEMENT_SWEEP_FRAMES; frame++) {
+            final int firstMove = frame * 10;
+            steps[frame] = new ScheduledCommand() {
+                @Override
+                public void execute() {
+                    // the reads of the test itself are not counted
+                    Element strip = getStripElement();
+                    int left = strip.getAbsoluteLeft();
+                    int width = strip.getOffsetWidth();
+                    if (firstMove == 0) {
+                        mouseOver(strip, null);
+                    }
+                    for (int i = firstMove; i < firstMove + 10; i++) {
+                        mouseMove(strip, left + i * width / 100);
+                    }
+                }
+            };
+        }
+        steps[SINGLE_ELEMENT_SWEEP_FRAMES] = new ScheduledCommand() {
+            @Override
+            public void execute() {
+                mouseOut(getStripElement(), Document.get().getBody());
+            }
+        };
+        steps[SINGLE_ELEMENT_SWEEP_FRAMES + 1] = new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertBudget("single element sweep",
+                        SINGLE_ELEMENT_SWEEP_MUTATIONS,
+                        SINGLE_ELEMENT_SWEEP_LAYOUT_READS);
+            }
+        };
+        runSteps(steps);
+    }
+
+    /**
+     * Detaching and attaching the widget again should keep the width of the
+     * stars instead of measuring the strip sized by the previous measurement.
+     */
+    public void testSingleElementReattach() {
+        injectStarWidth();
+        widget.setSingleElementEnabled(true);
+        widget.setMaxValue(10);
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertEquals(10 * STAR_WIDTH + "px", getStripElement()
+                        .getStyle().getWidth());
+                RootPanel.get().remove(widget);
+                RootPanel.get().add(widget);
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                RootPanel.get().remove(widget);
+                RootPanel.get().add(widget);
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertEquals(10 * STAR_WIDTH + "px", getStripElement()
+                        .getStyle().getWidth());
+            }
+        });
+    }
+
+    /**
+     * A widget hidden when attached measures zero and should be measured
+     * again once it's shown.
+     */
+    public void testSingleElementHiddenWhenAttached() {
+        injectStarWidth();
+        RootPanel.get().clear();
+        final FlowPanel hidden = new FlowPanel();
+        hidden.setVisible(false);
+        widget = new RatingStarsWidget();
+        widget.setSingleElementEnabled(true);
+        widget.setMaxValue(10);
+        hidden.add(widget);
+        RootPanel.get().add(hidden);
+
+        delayTestFinish(10000);
+        new Timer() {
+            private boolean shown;
+
+            @Override
+            public void run() {
+                if (!shown) {
+                    assertEquals("", getStripElement().getStyle().getWidth());
+                    hidden.setVisible(true);
+                    shown = true;
+                    schedule(1000);
+                } else {
+                    assertEquals(10 * STAR_WIDTH + "px", getStripElement()
+                            .getStyle().getWidth());
+                    finishTest();
+                }
+            }
+        }.schedule(500);
+    }
+
+    /**
+     * Clicks on the padding around the stars in the single element mode
+     * should be ignored instead of giving the minimum or maximum value.
+     */
+    public void testSingleElementClickOutsideStars() {
+        injectStarWidth();
+        widget.setSingleElementEnabled(true);
+        widget.setMaxValue(5);
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                Element strip = getStripElement();
+                int left = strip.getAbsoluteLeft();
+                int width = strip.getOffsetWidth();
+                click(widget.getElement(), left - 1);
+                click(widget.getElement(), left + width + 1);
+                assertEquals(0.0, widget.getValue(), 0.0);
+                click(strip, left + width / 2);
+                assertEquals(3.0, widget.getValue(), 0.0);
+            }
+        });
+    }
+
+    public void testKeyboardNavigation() {
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                focusEvent(Document.get().createFocusEvent());
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                for (int i = 0; i < 4; i++) {
+                    keyUp(KeyCodes.KEY_RIGHT);
+                }
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                for (int i = 0; i < 2; i++) {
+                    keyUp(KeyCodes.KEY_LEFT);
+                }
+                keyUp(KeyCodes.KEY_ENTER);
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                focusEvent(Document.get().createBlurEvent());
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertEquals(3.0, widget.getValue(), 0.0);
+                assertBudget("keyboard navigation",
+                        KEYBOARD_NAVIGATION_MUTATIONS,
+                        KEYBOARD_NAVIGATION_LAYOUT_READS);
+            }
+        });
+    }
+
+    public void testSetMaxValue() {
+        widget.setValue(3.0);
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                widget.setMaxValue(10);
+                widget.setMaxValue(7);
+                widget.setMaxValue(5);
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertEquals(5, getStarElements().length);
+                assertBudget("setMaxValue", SET_MAX_VALUE_MUTATIONS,
+                        SET_MAX_VALUE_LAYOUT_READS);
+            }
+        });
+    }
+
+    public void testSetMaxValueToggle() {
+        final RatingStarsWidget[] widgets = new RatingStarsWidget[MAX_VALUE_TOGGLE_WIDGETS];
+        widgets[0] = widget;
+        for (int i = 1; i < widgets.length; i++) {
+            widgets[i] = new RatingStarsWidget();
+            RootPanel.get().add(widgets[i]);
+        }
+        for (RatingStarsWidget widget : widgets) {
+            widget.setValue(3.0);
+        }
+        final Element firstStar = getStarElements()[0];
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                for (int toggle = 0; toggle < MAX_VALUE_TOGGLES; toggle++) {
+                    for (RatingStarsWidget widget : widgets) {
+                        widget.setMaxValue(toggle % 2 == 0 ? 10 : 5);
+                    }
+                }
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                // the stars kept are not recreated
+                assertSame(firstStar, getStarElements()[0]);
+                assertEquals(5, getStarElements().length);
+                assertBudget("setMaxValue toggle", MAX_VALUE_TOGGLE_MUTATIONS
+                        * MAX_VALUE_TOGGLE_WIDGETS * MAX_VALUE_TOGGLES, 0);
+            }
+        });
+    }
+
+    public void testCaptionUpdates() {
+        runSteps(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                mouseOver(getStarElements()[2], null);
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                resetCounters(); // count only the updates
+                Map<Integer, String> changed = new HashMap<Integer, String>();
+                changed.put(1, "Awful");
+                changed.put(3, "Your Rating");
+                widget.updateValueCaptions(changed);
+                widget.updateValueCaptions(captions(CAPTIONS));
+            }
+        }, new ScheduledCommand() {
+            @Override
+            public void execute() {
+                assertBudget("caption updates", CAPTION_UPDATE_MUTATIONS,
+                        CAPTION_UPDATE_LAYOUT_READS);
+            }
+        });
+    }
+
+    /**
+     * Resets the counters once the widget has connected its events and then
+     * runs each step in an animation frame of its own. The last step should
+     * check the counts.
+     */
+    private void runSteps(final ScheduledCommand... steps) {
+        delayTestFinish(10000);
+        AnimationScheduler.get().requestAnimationFrame(new AnimationCallback() {
+            private int next = -1;
+
+            @Override
+            public void execute(double timestamp) {
+                if (next < 0) {
+                    resetCounters();
+                } else {
+                    steps[next].execute();
+                }
+                if (++next < steps.length) {
+                    AnimationScheduler.get().requestAnimationFrame(this);
+                } else {
+                    finishTest();
+                }
+            }
+        });
+    }
+
+    private static void injectStarWidth() {
+        if (!starWidthInjected) {
+            StyleInjector.inject("." + RatingStarsWidget.STRIP_CLASSNAME
+                    + " { width: " + STAR_WIDTH + "px; }", true);
+            starWidthInjected = true;
+        }
+    }
+
+    private static void resetCounters() {
+        DomMutationObserver.reset();
+        DomCounters.reset();
+    }
+
+    private static void assertBudget(String sequence, int mutationBudget,
+            int layoutReadBudget) {
+        int mutations = DomMutationObserver.getMutations();
+        int layoutReads = DomCounters.getLayoutReads();
+        if (mutations > mutationBudget || layoutReads > layoutReadBudget) {
+            fail(sequence + ": " + mutations + " mutations (budget "
+                    + mutationBudget + "), " + layoutReads
+                    + " layout reads (budget " + layoutReadBudget + ")");
+        }
+    }
+
+    private static Map<Integer, String> captions(String... captions) {
+        Map<Integer, String> map = new HashMap<Integer, String>();
+        for (int i = 0; i < captions.length; i++) {
+            map.put(i + 1, captions[i]);
+        }
+        return map;
+    }
+
+    private Element[] getStarElements() {
+        Element stars = widget.getElement().getFirstChildElement();
+        Element[] starElements = new Element[stars.getChildCount() - 1];
+        for (int i = 0; i < starElements.length; i++) {
+            starElements[i] = stars.getChild(i).cast();
+        }
+        return starElements;
+    }
+
+    private Element getStripElement() {
+        return widget.getElement().getFirstChildElement()
+                .getFirstChildElement();
+    }
+
+    private static void mouseOver(Element target, Element from) {
+        target.dispatchEvent(Document.get().createMouseOverEvent(0, 0, 0, 0,
+                0, false, false, false, false, NativeEvent.BUTTON_LEFT, from));
+    }
+
+    private static void mouseMove(Element target, int clientX) {
+        target.dispatchEvent(Document.get().createMouseMoveEvent(0, 0, 0,
+                clientX, 0, false, false, false, false,
+                NativeEvent.BUTTON_LEFT));
+    }
+
+    private static void click(Element target, int clientX) {
+        target.dispatchEvent(Document.get().createClickEvent(0, 0, 0, clientX,
+                0, false, false, false, false));
+    }
+
+    private static void mouseOut(Element target, Element to) {
+        target.dispatchEvent(Document.get().createMouseOutEvent(0, 0, 0, 0, 0,
+                false, false, false, false, NativeEvent.BUTTON_LEFT, to));
+    }
+
+    /**
+     * Passes the focus or blur event to the widget directly, because HtmlUnit
+     * doesn't dispatch them to the element.
+     */
+    private void focusEvent(NativeEvent event) {
+        widget.onBrowserEvent(Event.as(event));
+    }
+
+    private void keyUp(int keyCode) {
+        widget.getElement().dispatchEvent(
+                Document.get().createKeyUpEvent(false, false, false, false,
+                        keyCode));
+    }
+}
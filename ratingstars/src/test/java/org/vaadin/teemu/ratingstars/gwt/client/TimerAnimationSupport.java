@@ -0,0 +1,15 @@
+package org.vaadin.teemu.ratingstars.gwt.client;
+
+import com.google.gwt.animation.client.AnimationScheduler.AnimationSupportDetector;
+
+/**
+ * Makes the animation frames run on timers in the GWT tests, because HtmlUnit
+ * doesn't call the <code>requestAnimationFrame</code> callbacks.
+ */
+public class TimerAnimationSupport extends AnimationSupportDetector {
+
+    @Override
+    public boolean isNativelySupported() {
+        return false;
+    }
+}
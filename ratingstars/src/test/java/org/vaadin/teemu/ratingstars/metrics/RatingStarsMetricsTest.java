@@ -0,0 +1,88 @@
+package org.vaadin.teemu.ratingstars.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaadin.teemu.ratingstars.RatingStars;
+import org.vaadin.teemu.ratingstars.TestUI;
+
+import elemental.json.JsonObject;
+
+/**
+ * Tests the instance counts and the state sizes recorded by the RatingStars
+ * components.
+ */
+public class RatingStarsMetricsTest {
+
+    private final RatingStarsMetrics metrics = RatingStarsMetrics.get();
+
+    private TestUI ui;
+    private RatingStars ratingStars;
+
+    @Before
+    public void setUp() {
+        metrics.setEnabled(true);
+        metrics.reset();
+        ui = new TestUI();
+        ratingStars = new RatingStars();
+    }
+
+    @After
+    public void tearDown() {
+        metrics.setEnabled(false);
+    }
+
+    @Test
+    public void disabledBeforeDetach_detachStillRecorded() {
+        int uis = metrics.getUiCount();
+        long instances = metrics.getLiveInstances();
+
+        ui.setContent(ratingStars);
+        assertEquals(uis + 1, metrics.getUiCount());
+        assertEquals(instances + 1, metrics.getLiveInstances());
+
+        metrics.setEnabled(false);
+        ui.setContent(null);
+        assertEquals(uis, metrics.getUiCount());
+        assertEquals(instances, metrics.getLiveInstances());
+    }
+
+    @Test
+    public void initialState_measuredAsSent() {
+        ratingStars.setValue(3.0);
+        ui.setContent(ratingStars);
+
+        JsonObject response = ui.respond();
+
+        assertEquals(1, metrics.getStateSyncCount());
+        assertEquals(TestUI.getStateChanges(response, ratingStars).toJson().length(), metrics.getStateBytes());
+    }
+
+    @Test
+    public void changedState_measuredAsSent() {
+        ui.setContent(ratingStars);
+        ui.respond();
+        metrics.reset();
+
+        ratingStars.setValue(4.0);
+        JsonObject response = ui.respond();
+
+        assertEquals(1, metrics.getStateSyncCount());
+        assertEquals(TestUI.getStateChanges(response, ratingStars).toJson().length(), metrics.getStateBytes());
+    }
+
+    @Test
+    public void unchangedState_notMeasured() {
+        ui.setContent(ratingStars);
+        ui.respond();
+        metrics.reset();
+
+        ratingStars.markAsDirty();
+        ui.respond();
+
+        assertEquals(0, metrics.getStateSyncCount());
+    }
+
+}
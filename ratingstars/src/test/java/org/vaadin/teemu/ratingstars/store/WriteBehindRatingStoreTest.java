@@ -0,0 +1,106 @@
+package org.vaadin.teemu.ratingstars.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests that a failing delegate store doesn't make the pending votes grow
+ * without bound, that the votes it fails to accept are reported by flush and
+ * close, and that an interrupted flush is reported.
+ */
+public class WriteBehindRatingStoreTest {
+
+    /** Fails until told to accept the votes. */
+    private static class FailingStore implements RatingStore {
+        final List<RatingVote> stored = new ArrayList<>();
+        volatile boolean failing = true;
+
+        @Override
+        public synchronized void storeAll(List<RatingVote> votes) {
+            if (failing) {
+                throw new IllegalStateException("failing on purpose");
+            }
+            stored.addAll(votes);
+        }
+    }
+
+    @Test
+    public void failingDelegate_pendingVotesBounded() {
+        FailingStore delegate = new FailingStore();
+        WriteBehindRatingStore store = new WriteBehindRatingStore(delegate, 10, 50, 1, TimeUnit.DAYS);
+        try {
+            for (int i = 0; i < 200; i++) {
+                store.store(new RatingVote(i, 0.0, 5.0));
+            }
+            assertTrue(store.getPendingCount() <= 50);
+            assertEquals(200, store.getPendingCount() + store.getDroppedCount());
+
+            delegate.failing = false;
+            store.flush();
+            assertEquals(0, store.getPendingCount());
+            assertEquals(200 - store.getDroppedCount(), delegate.stored.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void failingDelegate_flushAndCloseThrow() {
+        FailingStore delegate = new FailingStore();
+        WriteBehindRatingStore store = new WriteBehindRatingStore(delegate, 10, 1, TimeUnit.DAYS);
+        store.store(new RatingVote(1, 0.0, 5.0));
+        try {
+            store.flush();
+            fail("flush should fail while votes are pending");
+        } catch (IllegalStateException e) {
+            assertEquals(1, store.getPendingCount());
+        }
+        try {
+            store.close();
+            fail("close should fail while votes are pending");
+        } catch (IllegalStateException e) {
+            assertEquals(1, store.getPendingCount());
+        }
+    }
+
+    @Test
+    public void interruptedFlush_throwsAndKeepsInterruptFlag() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RatingStore delegate = new RatingStore() {
+            @Override
+            public void storeAll(List<RatingVote> votes) {
+            }
+
+            @Override
+            public void flush() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        WriteBehindRatingStore store = new WriteBehindRatingStore(delegate, 10, 1, TimeUnit.DAYS);
+        try {
+            Thread.currentThread().interrupt();
+            try {
+                store.flush();
+                fail("flush should fail when interrupted");
+            } catch (IllegalStateException e) {
+                assertTrue(Thread.interrupted());
+            }
+        } finally {
+            release.countDown();
+            store.close();
+        }
+    }
+
+}